@@ -0,0 +1,396 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A red-black tree that stores its nodes as parallel arrays instead of node objects.
+ * Each node is an int handle that indexes the left, right and parent arrays, the
+ * colour array and the values array. This avoids an object header and four references
+ * per value, and keeps the links of neighbouring nodes close together in memory.
+ * Insertion and rotation follow the same algorithms as RedBlackTree: values that
+ * compare equal to an existing value are placed in its left subtree.
+ */
+public class ArrayRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // handle used in place of a null node reference
+    private static final int NIL = -1;
+    // colours stored in the colour array
+    private static final byte BLACK = 0;
+    private static final byte RED = 1;
+
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private byte[] color;
+    private Object[] values;
+
+    private int root = NIL; // handle of the root node
+    private int count = 0; // number of handles in use, which is also the size
+
+    private Comparable<T> min = null; // Stores the minimum bound for iteration
+    private Comparable<T> max = null; // Stores the maximum bound for iteration
+
+    /**
+     * Creates an empty tree with room for a small number of values.
+     */
+    public ArrayRedBlackTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree with room for capacity values before its arrays need to grow.
+     * @param capacity the initial number of values the tree can hold
+     * @throws IllegalArgumentException when capacity is negative
+     */
+    public ArrayRedBlackTree(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        color = new byte[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Inserts a new data value into the tree, and restores the red-black properties.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) throw new NullPointerException("Cannot insert null into ArrayRedBlackTree");
+        if (count == values.length) grow();
+
+        int node = count++;
+        values[node] = data;
+        left[node] = NIL;
+        right[node] = NIL;
+        color[node] = RED;
+
+        if (root == NIL) {
+            root = node;
+            parent[node] = NIL;
+            color[node] = BLACK;
+            return;
+        }
+
+        // descend to the leaf position of the new value, going left on ties
+        int current = root;
+        while (true) {
+            if (data.compareTo(value(current)) <= 0) {
+                if (left[current] == NIL) {
+                    left[current] = node;
+                    break;
+                }
+                current = left[current];
+            } else {
+                if (right[current] == NIL) {
+                    right[current] = node;
+                    break;
+                }
+                current = right[current];
+            }
+        }
+        parent[node] = current;
+        ensureRedProperty(node);
+        color[root] = BLACK;
+    }
+
+    /**
+     * Resolves any red-black property violation caused by the red node, using the
+     * same recoloring and rotation cases as RedBlackTree.ensureRedProperty.
+     * @param node the handle of a red node whose parent may also be red
+     */
+    private void ensureRedProperty(int node) {
+        while (parent[node] != NIL && color[parent[node]] == RED) {
+            int p = parent[node];
+            int grandparent = parent[p];
+            if (grandparent == NIL) return;
+
+            boolean isParentLeft = left[grandparent] == p;
+            int uncle = isParentLeft ? right[grandparent] : left[grandparent];
+
+            if (uncle != NIL && color[uncle] == RED) {
+                color[p] = BLACK;
+                color[uncle] = BLACK;
+                color[grandparent] = RED;
+                node = grandparent;
+                continue;
+            }
+
+            // straighten a zig-zag so that node, parent and grandparent are in a line
+            if (isParentLeft && right[p] == node || !isParentLeft && left[p] == node) {
+                rotate(node, p);
+                node = p;
+                p = parent[node];
+            }
+            rotate(p, grandparent);
+            color[p] = BLACK;
+            color[grandparent] = RED;
+            return;
+        }
+    }
+
+    /**
+     * Rotates child into the position of its parent: a right rotation when child is a
+     * left child and a left rotation when child is a right child.
+     * @param child the handle of the node moving up
+     * @param p the handle of the parent of child, which moves down
+     */
+    private void rotate(int child, int p) {
+        int grandparent = parent[p];
+        if (right[p] == child) {
+            right[p] = left[child];
+            if (left[child] != NIL) parent[left[child]] = p;
+            left[child] = p;
+        } else {
+            left[p] = right[child];
+            if (right[child] != NIL) parent[right[child]] = p;
+            right[child] = p;
+        }
+        parent[child] = grandparent;
+        parent[p] = child;
+        if (grandparent == NIL) {
+            root = child;
+        } else if (left[grandparent] == p) {
+            left[grandparent] = child;
+        } else {
+            right[grandparent] = child;
+        }
+    }
+
+    /**
+     * Doubles the length of all node arrays.
+     */
+    private void grow() {
+        int capacity = Math.max(16, values.length * 2);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        color = Arrays.copyOf(color, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * @return the value stored in the node with the given handle
+     */
+    @SuppressWarnings("unchecked")
+    private T value(int node) {
+        return (T) values[node];
+    }
+
+    /**
+     * Check whether data is stored in the tree.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) return false;
+        int current = root;
+        while (current != NIL) {
+            int comparison = data.compareTo(value(current));
+            if (comparison == 0) return true;
+            current = comparison < 0 ? left[current] : right[current];
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Removes all values from the tree. The arrays keep their capacity for reuse.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, count, null);
+        count = 0;
+        root = NIL;
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the values stored in this tree, in ascending order and
+     * limited to the bounds set by setIteratorMin and setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayIterator(min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max, including both, that
+     * ignores the bounds set by setIteratorMin and setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new ArrayIterator(min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max, where each bound is
+     * only returned itself when it is marked as inclusive.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new ArrayIterator(min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * Iterator that walks in-order successors through the parent array.
+     */
+    private class ArrayIterator implements Iterator<T> {
+
+        private int next; // handle of the next node to return, or NIL when done
+        private final Comparable<T> max; // Maximum bound for iteration
+        private final boolean maxInclusive; // Whether values equal to max are returned
+
+        /**
+         * Creates an iterator that starts at the first value at or above min.
+         * @param min the minimum bound of the iterator, or null for none
+         * @param minInclusive whether values equal to min are returned
+         * @param max the maximum bound of the iterator, or null for none
+         * @param maxInclusive whether values equal to max are returned
+         */
+        ArrayIterator(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive) {
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            int highest = minInclusive ? 0 : -1;
+            int first = NIL;
+            int current = root;
+            while (current != NIL) {
+                if (min == null || min.compareTo(value(current)) <= highest) {
+                    first = current;
+                    current = left[current];
+                } else {
+                    current = right[current];
+                }
+            }
+            next = withinMax(first);
+        }
+
+        private int withinMax(int node) {
+            if (node == NIL) return NIL;
+            if (max != null) {
+                int comparison = max.compareTo(value(node));
+                if (comparison < 0 || (comparison == 0 && !maxInclusive)) return NIL;
+            }
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        @Override
+        public T next() {
+            if (next == NIL) throw new NoSuchElementException();
+            T result = value(next);
+            int node = next;
+            if (right[node] != NIL) {
+                node = right[node];
+                while (left[node] != NIL) node = left[node];
+            } else {
+                while (parent[node] != NIL && right[parent[node]] == node) node = parent[node];
+                node = parent[node];
+            }
+            next = withinMax(node);
+            return result;
+        }
+    }
+
+    /**
+     * JUnit tests for ArrayRedBlackTree, nested so that they can check the node arrays.
+     */
+    public static class ArrayRedBlackTreeTests {
+
+        /**
+         * Tests that values come back in sorted order, with and without bounds.
+         */
+        @Test
+        public void testInsertAndIterate() {
+            ArrayRedBlackTree<Integer> tree = new ArrayRedBlackTree<>(0);
+            List<Integer> values = new ArrayList<>();
+            java.util.Random random = new java.util.Random(5);
+            for (int i = 0; i < 2000; i++) {
+                int value = random.nextInt(500);
+                tree.insert(value);
+                values.add(value);
+            }
+            values.sort(null);
+            assertEquals(2000, tree.size());
+            assertTrue(tree.contains(values.get(0)));
+            assertFalse(tree.contains(500));
+
+            List<Integer> all = new ArrayList<>();
+            for (Integer value : tree) all.add(value);
+            assertEquals(values, all);
+
+            tree.setIteratorMin(100);
+            tree.setIteratorMax(199);
+            List<Integer> bounded = new ArrayList<>();
+            for (Integer value : tree) bounded.add(value);
+            assertEquals(values.subList(values.indexOf(100), values.lastIndexOf(199) + 1), bounded);
+
+            List<Integer> exclusive = new ArrayList<>();
+            tree.iterator(100, false, 199, false).forEachRemaining(exclusive::add);
+            assertEquals(values.subList(values.lastIndexOf(100) + 1, values.indexOf(199)), exclusive);
+        }
+
+        /**
+         * Tests that the red-black properties hold after sorted inserts, and that clear
+         * empties the tree while keeping it usable.
+         */
+        @Test
+        public void testBalancedAfterSortedInsertsAndClear() {
+            ArrayRedBlackTree<Integer> tree = new ArrayRedBlackTree<>();
+            for (int i = 0; i < 10_000; i++) tree.insert(i);
+            assertEquals(BLACK, tree.color[tree.root]);
+            assertTrue(blackHeight(tree, tree.root) > 0, "Tree violates Red-Black properties");
+
+            tree.clear();
+            assertTrue(tree.isEmpty());
+            assertFalse(tree.contains(5));
+            tree.insert(5);
+            assertTrue(tree.contains(5));
+            assertEquals(1, tree.size());
+        }
+
+        /**
+         * @return the black height of the subtree rooted at node, or -1 if it violates
+         * the red-black properties
+         */
+        private static int blackHeight(ArrayRedBlackTree<?> tree, int node) {
+            if (node == NIL) return 0;
+            byte[] color = tree.color;
+            if (color[node] == RED && tree.parent[node] != NIL && color[tree.parent[node]] == RED) return -1;
+            int leftHeight = blackHeight(tree, tree.left[node]);
+            int rightHeight = blackHeight(tree, tree.right[node]);
+            if (leftHeight < 0 || leftHeight != rightHeight) return -1;
+            return leftHeight + (color[node] == BLACK ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A B+-tree that stores many values per node, so that a lookup visits about
+ * log_fanout(n) nodes instead of the log2(n) nodes of a binary tree, and reads the
+ * keys of each node from one contiguous array. All values are kept in the leaves,
+ * which are linked in key order, so a range scan descends once and then walks the
+ * leaf chain. Values that compare equal are kept in the order they were inserted.
+ */
+public class BPlusTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    /**
+     * A node of the tree. Leaves store values in keys and link to the next leaf. Inner
+     * nodes store count children, and count - 1 separator keys: every value in
+     * children[i] is at least keys[i - 1] and at most keys[i].
+     */
+    private static final class Node {
+        final Object[] keys;
+        final Node[] children; // null in leaves
+        int count; // number of values in a leaf, or number of children in an inner node
+        Node next; // the next leaf in key order, only used in leaves
+
+        Node(int fanout, boolean leaf) {
+            // one spare slot lets a node overflow before it is split
+            this.keys = new Object[fanout + 1];
+            this.children = leaf ? null : new Node[fanout + 1];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private final int fanout; // most values in a leaf and most children of an inner node
+    private Node root;
+    private int height = 0; // number of inner nodes on every path from the root to a leaf
+    private int size = 0;
+
+    private Comparable<T> min = null; // Stores the minimum bound for iteration
+    private Comparable<T> max = null; // Stores the maximum bound for iteration
+
+    /**
+     * Creates an empty tree with a fanout of 64, which fills a few cache lines per node.
+     */
+    public BPlusTree() {
+        this(64);
+    }
+
+    /**
+     * Creates an empty tree whose nodes hold up to fanout values or children.
+     * @param fanout the most values in a leaf and the most children of an inner node
+     * @throws IllegalArgumentException when fanout is less than 3
+     */
+    public BPlusTree(int fanout) {
+        if (fanout < 3) throw new IllegalArgumentException("Fanout must be at least 3: " + fanout);
+        this.fanout = fanout;
+        this.root = new Node(fanout, true);
+    }
+
+    /**
+     * Inserts a new data value into the tree, after any values that compare equal to it.
+     * A node that overflows is split in half and the split moves up to its parent.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) throw new NullPointerException("Cannot insert null into BPlusTree");
+        // descend to the leaf, remembering the path for splits on the way back up
+        Node[] path = new Node[height];
+        int[] childIndex = new int[height];
+        Node node = root;
+        for (int depth = 0; depth < height; depth++) {
+            int child = search(node.keys, node.count - 1, data, true);
+            path[depth] = node;
+            childIndex[depth] = child;
+            node = node.children[child];
+        }
+
+        insertAt(node.keys, node.count, search(node.keys, node.count, data, true), data);
+        node.count++;
+        size++;
+        if (node.count <= fanout) return;
+
+        // split the leaf, then every inner node that overflows because of it
+        Node right = splitLeaf(node);
+        Object separator = right.keys[0];
+        for (int depth = height - 1; depth >= 0; depth--) {
+            Node parent = path[depth];
+            int position = childIndex[depth];
+            insertAt(parent.keys, parent.count - 1, position, separator);
+            insertAt(parent.children, parent.count++, position + 1, right);
+            if (parent.count <= fanout) return;
+            separator = parent.keys[parent.count / 2 - 1];
+            right = splitInner(parent);
+        }
+
+        // the root was split, so the tree grows by one level
+        Node newRoot = new Node(fanout, false);
+        newRoot.children[0] = root;
+        newRoot.children[1] = right;
+        newRoot.keys[0] = separator;
+        newRoot.count = 2;
+        root = newRoot;
+        height++;
+    }
+
+    /**
+     * Moves the upper half of the values of a full leaf into a new leaf that follows it.
+     * @return the new leaf
+     */
+    private Node splitLeaf(Node leaf) {
+        Node right = new Node(fanout, true);
+        int keep = leaf.count / 2;
+        right.count = leaf.count - keep;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, right.count);
+        java.util.Arrays.fill(leaf.keys, keep, leaf.count, null);
+        leaf.count = keep;
+        right.next = leaf.next;
+        leaf.next = right;
+        return right;
+    }
+
+    /**
+     * Moves the upper half of the children of a full inner node into a new inner node.
+     * The separator between the halves, keys[count / 2 - 1], is dropped here, the caller
+     * moves it up.
+     * @return the new inner node
+     */
+    private Node splitInner(Node inner) {
+        Node right = new Node(fanout, false);
+        int keep = inner.count / 2;
+        right.count = inner.count - keep;
+        System.arraycopy(inner.children, keep, right.children, 0, right.count);
+        System.arraycopy(inner.keys, keep, right.keys, 0, right.count - 1);
+        java.util.Arrays.fill(inner.children, keep, inner.count, null);
+        java.util.Arrays.fill(inner.keys, keep - 1, inner.count - 1, null);
+        inner.count = keep;
+        return right;
+    }
+
+    /**
+     * Shifts array[position, length) one slot to the right and stores value at position.
+     */
+    private static void insertAt(Object[] array, int length, int position, Object value) {
+        System.arraycopy(array, position, array, position + 1, length - position);
+        array[position] = value;
+    }
+
+    /**
+     * Binary search over the first length keys of a node.
+     * @param after true to find the first key above key, false for the first key at or above it
+     * @return the index of that key, or length when there is none
+     */
+    @SuppressWarnings("unchecked")
+    private int search(Object[] keys, int length, Comparable<T> key, boolean after) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = key.compareTo((T) keys[middle]);
+            if (comparison > 0 || (after && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the leaf holding the first value at or above key, or above key when
+     * exclusive, and stores the position of that value in position[0]. The position is
+     * the count of the last leaf when there is no such value.
+     */
+    private Node seek(Comparable<T> key, boolean exclusive, int[] position) {
+        Node node = root;
+        if (key == null) {
+            while (!node.isLeaf()) node = node.children[0];
+            position[0] = 0;
+            return node;
+        }
+        while (!node.isLeaf()) node = node.children[search(node.keys, node.count - 1, key, exclusive)];
+        int index = search(node.keys, node.count, key, exclusive);
+        // every value in the following leaf is at or above the separator that led here
+        if (index == node.count && node.next != null) {
+            node = node.next;
+            index = 0;
+        }
+        position[0] = index;
+        return node;
+    }
+
+    /**
+     * Check whether data is stored in the tree.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Comparable<T> data) {
+        if (data == null) return false;
+        int[] position = new int[1];
+        Node leaf = seek(data, false, position);
+        return position[0] < leaf.count && data.compareTo((T) leaf.keys[position[0]]) == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        root = new Node(fanout, true);
+        height = 0;
+        size = 0;
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over the values stored in this tree, in ascending order and
+     * limited to the bounds set by setIteratorMin and setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new LeafIterator(min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max, including both, that
+     * ignores the bounds set by setIteratorMin and setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new LeafIterator(min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max, where each bound is
+     * only returned itself when it is marked as inclusive.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new LeafIterator(min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * Iterator that descends once to the first value within the minimum bound, and then
+     * reads the values of each leaf in turn, following the links between leaves.
+     */
+    private class LeafIterator implements Iterator<T> {
+
+        private Node leaf; // leaf holding the next value, or null when done
+        private int index; // position of the next value within leaf
+        private final Comparable<T> max; // Maximum bound for iteration
+        private final boolean maxInclusive; // Whether values equal to max are returned
+
+        LeafIterator(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive) {
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            int[] position = new int[1];
+            leaf = seek(min, !minInclusive, position);
+            index = position[0];
+            checkEnd();
+        }
+
+        /**
+         * Sets leaf to null when the next value is past the end of the tree or above max.
+         */
+        @SuppressWarnings("unchecked")
+        private void checkEnd() {
+            if (index == leaf.count) {
+                leaf = leaf.next;
+                index = 0;
+                if (leaf == null) return;
+            }
+            if (max != null) {
+                int comparison = max.compareTo((T) leaf.keys[index]);
+                if (comparison < 0 || (comparison == 0 && !maxInclusive)) leaf = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (leaf == null) throw new NoSuchElementException();
+            T value = (T) leaf.keys[index++];
+            checkEnd();
+            return value;
+        }
+    }
+
+    /**
+     * JUnit tests for BPlusTree, nested so that they can check the structure of the nodes.
+     */
+    public static class BPlusTreeTests {
+
+        /**
+         * Tests that values come back in sorted order with duplicates in insertion order,
+         * with and without bounds, for a small fanout that forces many splits.
+         */
+        @Test
+        public void testInsertAndIterate() {
+            BPlusTree<Integer> tree = new BPlusTree<>(3);
+            List<Integer> values = new ArrayList<>();
+            java.util.Random random = new java.util.Random(13);
+            for (int i = 0; i < 5000; i++) {
+                int value = random.nextInt(700);
+                tree.insert(value);
+                values.add(value);
+            }
+            values.sort(null);
+            assertEquals(5000, tree.size());
+            assertTrue(tree.contains(values.get(0)));
+            assertTrue(tree.contains(values.get(4999)));
+            assertFalse(tree.contains(700));
+            assertFalse(tree.contains(-1));
+            assertTrue(checkNode(tree.root, tree.height, null, null) > 0, "B+-tree structure is invalid");
+
+            List<Integer> all = new ArrayList<>();
+            for (Integer value : tree) all.add(value);
+            assertEquals(values, all);
+
+            tree.setIteratorMin(100);
+            tree.setIteratorMax(199);
+            List<Integer> bounded = new ArrayList<>();
+            for (Integer value : tree) bounded.add(value);
+            assertEquals(values.subList(values.indexOf(100), values.lastIndexOf(199) + 1), bounded);
+
+            List<Integer> exclusive = new ArrayList<>();
+            tree.iterator(100, false, 199, false).forEachRemaining(exclusive::add);
+            assertEquals(values.subList(values.lastIndexOf(100) + 1, values.indexOf(199)), exclusive);
+            assertFalse(tree.iterator(700, null).hasNext());
+        }
+
+        /**
+         * Tests that runs of equal values longer than a leaf keep their insertion order
+         * and are all found, and that clear leaves an empty, usable tree.
+         */
+        @Test
+        public void testLongRunsOfDuplicatesAndClear() {
+            BPlusTree<Song> tree = new BPlusTree<>(4);
+            java.util.Comparator<Song> byYear = java.util.Comparator.comparingInt(Song::getYear);
+            for (int i = 0; i < 200; i++) {
+                tree.insert(new Song("Song " + i, "Artist", "pop", 2000 + i % 3, 0, 0, 0, 0, 0, byYear));
+            }
+            Song probe = new Song("", "", "", 2001, 0, 0, 0, 0, 0, byYear);
+            List<String> titles = new ArrayList<>();
+            tree.iterator(probe, probe).forEachRemaining(song -> titles.add(song.getTitle()));
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i < 200; i += 3) expected.add("Song " + i);
+            assertEquals(expected, titles);
+
+            tree.clear();
+            assertTrue(tree.isEmpty());
+            assertFalse(tree.iterator().hasNext());
+            assertFalse(tree.contains(probe));
+            tree.insert(probe);
+            assertTrue(tree.contains(probe));
+            assertEquals(1, tree.size());
+        }
+
+        /**
+         * Tests that a BPlusTree can stand in for the red-black tree behind Backend.
+         */
+        @Test
+        public void testBackendWithBPlusTree() throws java.io.IOException {
+            Backend backend = new Backend(new BPlusTree<>());
+            Backend reference = new Backend(new IterableRedBlackTree<>());
+            backend.readData("songs.csv");
+            reference.readData("songs.csv");
+            assertEquals(reference.getRange(2011, 2013), backend.getRange(2011, 2013));
+            assertEquals(reference.getRange(null, null), backend.getRange(null, null));
+        }
+
+        /**
+         * @return the number of values below node, or -1 if a node is over or under full,
+         * the keys are out of order, a value lies outside the separators around its
+         * subtree, or the leaves are at different depths
+         */
+        @SuppressWarnings("unchecked")
+        private static <T extends Comparable<T>> int checkNode(Node node, int height, T low, T high) {
+            Object[] keys = node.keys;
+            int keyCount = node.isLeaf() ? node.count : node.count - 1;
+            for (int i = 0; i < keyCount; i++) {
+                T key = (T) keys[i];
+                if (i > 0 && key.compareTo((T) keys[i - 1]) < 0) return -1;
+                if (low != null && key.compareTo(low) < 0 || high != null && key.compareTo(high) > 0) return -1;
+            }
+            if (node.isLeaf()) return height == 0 ? node.count : -1;
+            if (height == 0 || node.count < 2) return -1;
+            int total = 0;
+            for (int i = 0; i < node.count; i++) {
+                int below = checkNode(node.children[i], height - 1,
+                                      i == 0 ? low : (T) keys[i - 1], i == node.count - 1 ? high : (T) keys[i]);
+                if (below < 0) return -1;
+                total += below;
+            }
+            return total;
+        }
+    }
+}
@@ -68,6 +68,10 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
         child.setParent(grandparent);
         parent.setParent(child);
 
+        // parent is now below child, so its subtree size must be fixed first
+        updateNode(parent);
+        updateNode(child);
+
         if (grandparent == null) {
             root = child;  // New root
         } else if (isParentLeftChild) {
@@ -184,42 +188,25 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
     }
 
     /**
-     * Returns a level-order traversal as a string.
+     * Returns a level-order traversal as a string, visiting nodes with a queue
+     * rather than recursing once per level.
      */
     private String toLevelOrderString(BinaryTreeNode<T> root) {
         if (root == null) return "[]";
 
-        int height = getHeight(root);
         StringBuilder sb = new StringBuilder("[");
-
-        for (int i = 1; i <= height; i++) {
-            appendLevel(root, i, sb);
+        java.util.ArrayDeque<BinaryTreeNode<T>> queue = new java.util.ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            BinaryTreeNode<T> node = queue.poll();
+            sb.append(node.getData()).append(", ");
+            if (node.childLeft() != null) queue.add(node.childLeft());
+            if (node.childRight() != null) queue.add(node.childRight());
         }
 
         if (sb.length() > 2) sb.setLength(sb.length() - 2);
         sb.append("]");
         return sb.toString();
     }
-
-    /**
-     * Returns the height of the tree.
-     */
-    private int getHeight(BinaryTreeNode<T> node) {
-        if (node == null) return 0;
-        return 1 + Math.max(getHeight(node.childLeft()), getHeight(node.childRight()));
-    }
-
-    /**
-     * Appends all nodes at a given level to the StringBuilder.
-     */
-    private void appendLevel(BinaryTreeNode<T> node, int level, StringBuilder sb) {
-        if (node == null) return;
-        if (level == 1) {
-            sb.append(node.getData()).append(", ");
-        } else {
-            appendLevel(node.childLeft(), level - 1, sb);
-            appendLevel(node.childRight(), level - 1, sb);
-        }
-    }
 }
 
@@ -3,20 +3,239 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * Backend - Implements the BackendInterface for managing a collection of songs.
  */
 
 public class Backend implements BackendInterface {
+    // priority tracked by the song tree so that fiveMost can prune its search
+    private static final ToIntFunction<Song> DANCEABILITY = Song::getDanceability;
+
+    // the order of getRange, and of the songs of a red-black tree loaded by readData
+    private static final Comparator<Song> BY_YEAR_AND_TITLE =
+        Comparator.comparingInt(Song::getYear).thenComparing(Song::getTitle);
+
+    // the song attributes that topSongs ranks by, keyed by their names
+    private static final Map<String, ToIntFunction<Song>> ATTRIBUTES = Map.of(
+        "bpm", Song::getBPM,
+        "energy", Song::getEnergy,
+        "danceability", DANCEABILITY,
+        "loudness", Song::getLoudness,
+        "liveness", Song::getLiveness);
+
     private IterableSortedCollection<Song> songTree;
     private Integer yearLow = null, yearHigh = null;
     private Integer loudnessThreshold = null;
+    // secondary indexes added with addIndex, keyed by attribute name
+    private final Map<String, SongIndex> indexes = new HashMap<>();
+    // the modification count of the tree when readData last updated the indexes, see isLoaded
+    private long loadedVersion = -1;
+
+    // the attributes of the loaded songs in int arrays, for scans without an index
+    private final SongColumns columns = new SongColumns();
+    // bitmaps of the rows of columns by year and loudness, for the filters of getRange and filterSongs
+    private final FilterBitmaps bitmaps = new FilterBitmaps();
 
+    // results of recent queries, keyed by queryKey, with the least recently used first
+    private int cacheCapacity = 32;
+    private final LinkedHashMap<List<Object>, List<String>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, List<String>> eldest) {
+            return size() > cacheCapacity;
+        }
+    };
+    // readData counts up the version, and cached results of older versions are dropped
+    private long catalogVersion = 0;
+    private long cacheVersion = 0;
+    private int cacheSize = 0; // size of the song tree when the cache was last used
+    private long cacheModifications = -1; // modification count of the song tree at that time
+    private long cacheHits = 0, cacheMisses = 0;
+
+    /**
+     * Creates a backend that stores its songs in tree.  An empty IterableRedBlackTree is
+     * set up here, once, to keep the songs of each year together in one node and to
+     * track the highest danceability of each subtree, which fiveMost prunes its search
+     * with.  A tree that already holds songs is used as it was set up by the caller.
+     * readData rebuilds a red-black tree on every load, so a tree with node pooling
+     * turned on by the caller reuses its nodes.
+     * @param tree is the tree that readData loads songs into
+     */
     public Backend(IterableSortedCollection<Song> tree) {
         this.songTree = tree;
+        if (tree instanceof IterableRedBlackTree && tree.isEmpty()) {
+            IterableRedBlackTree<Song> redBlack = (IterableRedBlackTree<Song>) tree;
+            redBlack.setBucketDuplicates(true);
+            redBlack.setPriority(DANCEABILITY);
+        }
+    }
+
+    /**
+     * Keeps a secondary index of the songs ordered by attribute, which readData keeps
+     * up to date.  Queries that filter by an indexed attribute, such as the loudness
+     * filters of getRange and filterSongs, walk the index instead of the year range
+     * when fewer songs pass the filter than fall within the year range, so they take
+     * O(log n + k) time for k matching songs, plus sorting those k songs by year.
+     * The index is only used while the tree holds the songs of the last readData, so
+     * songs inserted into or removed from the tree directly turn it off until the
+     * next readData rebuilds it.  A tree that does not count its modifications, such as
+     * a BPlusTree, never uses the index, so it is kept empty.  Adding an index that exists already does nothing.
+     * @param attribute is one of bpm, energy, danceability, loudness or liveness
+     * @throws IllegalArgumentException when attribute is not one of the names above
+     */
+    public void addIndex(String attribute) {
+        ToIntFunction<Song> key = attribute == null ? null : ATTRIBUTES.get(attribute.toLowerCase());
+        if (key == null) throw new IllegalArgumentException("Unknown song attribute: " + attribute);
+        if (indexes.containsKey(attribute.toLowerCase())) return;
+        SongIndex index = new SongIndex(key);
+        if (modificationCount() >= 0) {
+            // the index of a tree that does not count its modifications is never read
+            List<Song> songs = new ArrayList<>();
+            songTree.forEach(songs::add);
+            index.addAll(songs);
+        }
+        indexes.put(attribute.toLowerCase(), index);
+    }
+
+    /**
+     * Returns the titles of the songs loaded by readData whose attributes are within all
+     * of the given bounds, ordered like the tree: by year, and then in the order they were
+     * loaded.  The year range and loudness filter set by getRange and filterSongs do not
+     * apply.  The scan runs over a columnar copy of the songs that readData keeps, so it
+     * reads only the bounded attributes, from arrays of ints.  When the tree changed
+     * since the last readData, or does not count its modifications, so that readData
+     * keeps no copy, the songs of the tree are checked one at a time instead.
+     * @param atLeast maps attribute names to the smallest value accepted, may be empty
+     * @param atMost maps attribute names to the largest value accepted, may be empty
+     * @return List of titles of the matching songs
+     * @throws IllegalArgumentException when a key is not year, bpm, energy, danceability,
+     *     loudness or liveness
+     */
+    public List<String> findSongs(Map<String, Integer> atLeast, Map<String, Integer> atMost) {
+        int[] min = new int[SongColumns.ATTRIBUTES.size()];
+        int[] max = new int[SongColumns.ATTRIBUTES.size()];
+        Arrays.fill(min, Integer.MIN_VALUE);
+        Arrays.fill(max, Integer.MAX_VALUE);
+        for (Map.Entry<String, Integer> bound : atLeast.entrySet()) {
+            int column = SongColumns.column(bound.getKey());
+            min[column] = Math.max(min[column], bound.getValue());
+        }
+        for (Map.Entry<String, Integer> bound : atMost.entrySet()) {
+            int column = SongColumns.column(bound.getKey());
+            max[column] = Math.min(max[column], bound.getValue());
+        }
+
+        List<Song> songs = new ArrayList<>();
+        if (isLoaded()) {
+            for (int row : columns.select(min, max)) songs.add(columns.get(row));
+        } else {
+            // the tree changed since the last readData, so the columns may not hold its songs
+            for (Song song : songTree) {
+                if (SongColumns.matches(song, min, max)) songs.add(song);
+            }
+        }
+        boolean inYearOrder = true;
+        for (int i = 1; i < songs.size() && inYearOrder; i++) {
+            inYearOrder = songs.get(i - 1).getYear() <= songs.get(i).getYear();
+        }
+        if (!inYearOrder) {
+            // songs loaded into a tree that was not empty come after all earlier rows,
+            // and a collection such as Tree_Placeholder has an order of its own
+            songs.sort(Comparator.comparingInt(Song::getYear));
+        }
+        List<String> titles = new ArrayList<>(songs.size());
+        for (Song song : songs) titles.add(song.getTitle());
+        return titles;
+    }
+
+    /**
+     * Sets how many query results are cached, dropping the least recently used results
+     * beyond the new capacity.  The results of getRange, filterSongs, topSongs and
+     * fiveMost are cached, keyed by the query and by the year range and loudness filter
+     * it ran with, until the songs of the tree change.  A capacity of 0 turns caching off.
+     * @param capacity is the maximum number of cached results
+     * @throws IllegalArgumentException when capacity is negative
+     */
+    public void setCacheCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+        cacheCapacity = capacity;
+        Iterator<List<Object>> keys = cache.keySet().iterator();
+        while (cache.size() > capacity) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of queries that were not in the cache
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return the key of operation run with the current year range and loudness filter
+     */
+    private List<Object> queryKey(String operation) {
+        return Arrays.asList(operation, yearLow, yearHigh, loudnessThreshold);
+    }
+
+    /**
+     * Returns a copy of the cached result of the query with key, or null when it is not
+     * cached.  Every cached result is dropped first if songs were loaded since it was
+     * cached, or the song tree was changed directly, which changes its modification
+     * count, or its size for a tree that does not count its modifications.
+     */
+    private List<String> cachedResult(List<Object> key) {
+        if (cacheVersion != catalogVersion || cacheSize != songTree.size()
+            || cacheModifications != modificationCount()) {
+            cache.clear();
+            cacheVersion = catalogVersion;
+            cacheSize = songTree.size();
+            cacheModifications = modificationCount();
+        }
+        List<String> result = cache.get(key);
+        if (result == null) {
+            cacheMisses++;
+            return null;
+        }
+        cacheHits++;
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Caches result as the result of the query with key.
+     * @return result
+     */
+    private List<String> cacheResult(List<Object> key, List<String> result) {
+        if (cacheCapacity > 0) cache.put(key, List.copyOf(result));
+        return result;
+    }
+
+    /**
+     * Stops keeping the secondary index of attribute, if there is one.
+     * @param attribute is the name the index was added with
+     */
+    public void removeIndex(String attribute) {
+        if (attribute != null) indexes.remove(attribute.toLowerCase());
     }
 
     /**
@@ -70,6 +289,10 @@ public class Backend implements BackendInterface {
                 throw new IOException("Error: Missing required column(s).");
             }
 
+            // songs are collected first so that an empty red-black tree can be
+            // bulk-built in one pass instead of inserting one row at a time
+            Comparator<Song> songComparator = Comparator.comparingInt(Song::getYear);
+            List<Song> songs = new ArrayList<>();
             String line;
             while ((line = br.readLine()) != null) {
                 try {
@@ -88,16 +311,105 @@ public class Backend implements BackendInterface {
                     int loudness = Integer.parseInt(values[loudnessIndex].trim());
                     int liveness = Integer.parseInt(values[livenessIndex].trim());
 
-                    Comparator<Song> songComparator = Comparator.comparingInt(Song::getYear);
                     Song song = new Song(title, artist, genre, year, bpm, energy, danceability, loudness, liveness, songComparator);
-                    songTree.insert(song);
+                    songs.add(song);
 
                 } catch (NumberFormatException | IndexOutOfBoundsException e) {
                 }
             }
+
+            // songs are added by year and then by title, so a tree that keeps songs of the
+            // same year in the order they are added holds them in the order of getRange
+            songs.sort(BY_YEAR_AND_TITLE);
+            boolean loaded = isLoaded();
+            if (songTree instanceof IterableRedBlackTree) {
+                // the songs of the tree are merged with the new ones and the tree is
+                // rebuilt in one pass, so earlier songs stay in title order as well
+                IterableRedBlackTree<Song> tree = (IterableRedBlackTree<Song>) songTree;
+                if (!tree.isEmpty()) {
+                    List<Song> merged = new ArrayList<>(tree.size() + songs.size());
+                    tree.forEach(merged::add);
+                    merged.addAll(songs);
+                    merged.sort(BY_YEAR_AND_TITLE);
+                    songs = merged;
+                }
+                tree.buildFrom(songs);
+                loaded = false; // every row is rebuilt in the order of the new tree
+            } else {
+                for (Song song : songs) {
+                    songTree.insert(song);
+                }
+            }
+            catalogVersion++;
+            if (modificationCount() < 0) {
+                // the rows and indexes are only read while isLoaded(), which is never true
+                // for a tree that does not count its modifications, so none are built
+                clearRows();
+            } else if (loaded && keepsInsertionOrder()) {
+                bitmaps.addAll(columns.size(), songs);
+                columns.addAll(songs);
+                // songs are added in the order they entered the tree, which is the order
+                // that songs from the same year are kept in
+                for (SongIndex index : indexes.values()) index.addAll(songs);
+            } else {
+                // the tree was cleared, changed or rebuilt since the last readData, or the
+                // new songs may sit before songs of the same year that were already loaded
+                rebuildFromTree();
+            }
+            loadedVersion = modificationCount();
         }
     }
 
+    /**
+     * Rebuilds the columns, their bitmaps and every index from the songs of the tree,
+     * in the order of the tree.
+     */
+    private void rebuildFromTree() {
+        List<Song> songs = new ArrayList<>(songTree.size());
+        songTree.forEach(songs::add);
+        clearRows();
+        bitmaps.addAll(0, songs);
+        columns.addAll(songs);
+        for (SongIndex index : indexes.values()) index.addAll(songs);
+    }
+
+    /**
+     * Removes every row of the columns, their bitmaps and every index.
+     */
+    private void clearRows() {
+        columns.clear();
+        bitmaps.clear();
+        for (SongIndex index : indexes.values()) index.clear();
+    }
+
+    /**
+     * @return the modification count of the tree, or -1 for a tree that does not count
+     *     its modifications
+     */
+    private long modificationCount() {
+        if (songTree instanceof BinarySearchTree) return ((BinarySearchTree<?>) songTree).getModificationCount();
+        if (songTree instanceof ConcurrentSkipList) return ((ConcurrentSkipList<?>) songTree).getModificationCount();
+        return -1;
+    }
+
+    /**
+     * @return true if the tree keeps songs from the same year in the order they were
+     *     inserted, so that rows appended by readData stay in the order of the tree
+     */
+    private boolean keepsInsertionOrder() {
+        if (songTree instanceof IterableRedBlackTree) return ((IterableRedBlackTree<?>) songTree).isBucketDuplicates();
+        return songTree instanceof ConcurrentSkipList;
+    }
+
+    /**
+     * @return true if the tree has not changed since the last readData, so that the
+     *     structures readData derives from the songs hold exactly the songs of the tree
+     */
+    private boolean isLoaded() {
+        long count = modificationCount();
+        return count >= 0 && count == loadedVersion;
+    }
+
     private String[] parseCSVLine(String line) {
         List<String> result = new ArrayList<>();
         boolean insideQuotes = false;
@@ -140,34 +452,128 @@ public class Backend implements BackendInterface {
 
     @Override
     public List<String> getRange(Integer low, Integer high) {
-        if (low != null) this.yearLow = low;
-        else this.yearLow = null;
+        this.yearLow = low;
+        this.yearHigh = high;
+        List<Object> query = queryKey("getRange");
+        List<String> cached = cachedResult(query);
+        if (cached != null) return cached;
 
-        if (high != null) this.yearHigh = high;
-        else this.yearHigh = null;
+        List<String> result = new ArrayList<>();
+        for (Song song : sortWithinYears(filteredSongsInRange())) {
+            result.add(song.getTitle());
+        }
+        return cacheResult(query, result);
+    }
 
-        List<Song> filteredSongs = new ArrayList<>();
+    /**
+     * Retrieves one page of the titles of songs from low to high that pass any set
+     * loudness filter, and sets the year range like getRange does.  Songs are in the
+     * order of the tree, which for songs loaded by readData is the order of getRange: by
+     * year, and then by title.  On an IterableRedBlackTree each page is read with a
+     * cursor of the tree, and the token holds the cursor's position as "YEAR:COUNT": the
+     * year of the last song it passed and how many songs of that year it passed.  A page
+     * resumes from that position with an O(log n) seek and then reads only its own songs
+     * and the songs the loudness filter leaves out between them.
+     *
+     * @param low is the minimum year of songs in the returned page
+     * @param high is the maximum year of songs in the returned page
+     * @param token is null for the first page, or the nextToken of the previous page
+     * @param count is the maximum number of titles in the returned page
+     * @return the Page holding up to count titles
+     * @throws IllegalArgumentException when token is not a valid token or count is negative
+     */
+    @Override
+    public Page getPage(Integer low, Integer high, String token, int count) {
+        if (!(songTree instanceof IterableRedBlackTree)) {
+            return BackendInterface.super.getPage(low, high, token, count);
+        }
+        if (count < 0) throw new IllegalArgumentException("Page size must not be negative: " + count);
+        this.yearLow = low;
+        this.yearHigh = high;
+        IterableRedBlackTree<Song> tree = (IterableRedBlackTree<Song>) songTree;
+        Song max = high == null ? null : yearProbe(high);
 
-        for (Song song : songTree) {
-            int year = song.getYear();
-            boolean withinYearRange = (yearLow == null || year >= yearLow) &&
-                                      (yearHigh == null || year <= yearHigh);
-            boolean passesLoudnessFilter = (this.loudnessThreshold == null || song.getLoudness() < this.loudnessThreshold);
+        IterableRedBlackTree<Song>.Cursor cursor;
+        if (token == null) {
+            cursor = tree.cursor(low == null ? null : yearProbe(low), true, max, true);
+        } else {
+            int separator = token.indexOf(':');
+            try {
+                int year = Integer.parseInt(token.substring(0, Math.max(0, separator)));
+                int ties = Integer.parseInt(token.substring(separator + 1));
+                if (ties < 0) throw new NumberFormatException();
+                cursor = tree.resume(yearProbe(year), ties, max, true);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token: " + token);
+            }
+        }
 
-            if (withinYearRange && passesLoudnessFilter) {
-                filteredSongs.add(song);
+        List<String> titles = new ArrayList<>();
+        while (cursor.hasNext()) {
+            // the position before song, where the next page starts if song is on it
+            Song last = cursor.last();
+            int ties = cursor.ties();
+            Song song = cursor.next();
+            if (!passesLoudnessFilter(song)) continue;
+            if (titles.size() == count) {
+                return new Page(titles, last == null ? song.getYear() + ":0" : last.getYear() + ":" + ties);
             }
+            titles.add(song.getTitle());
         }
+        return new Page(titles, null);
+    }
 
-        filteredSongs.sort(Comparator.comparingInt(Song::getYear).thenComparing(Song::getTitle));
+    /**
+     * Retrieves the titles of the newest songs within the year range set by the most
+     * recent call to getRange that pass any loudness filter, newest first. On an
+     * IterableRedBlackTree this walks the tree backwards from the end of the year range
+     * and stops after count songs, so it takes time proportional to count rather than
+     * to the number of songs in the range.
+     *
+     * @param count is the maximum number of titles to return
+     * @return List of up to count titles, ordered from the newest year to the oldest
+     */
+    public List<String> getNewest(int count) {
+        Iterator<Song> songs;
+        if (songTree instanceof IterableRedBlackTree) {
+            songs = ((IterableRedBlackTree<Song>) songTree).descendingIterator(
+                yearLow == null ? null : yearProbe(yearLow), true,
+                yearHigh == null ? null : yearProbe(yearHigh), true);
+        } else {
+            // other trees can only iterate upwards, so the range is reversed in memory
+            List<Song> ascending = new ArrayList<>();
+            songTree.iterator(yearLow == null ? null : yearProbe(yearLow),
+                              yearHigh == null ? null : yearProbe(yearHigh)).forEachRemaining(ascending::add);
+            java.util.Collections.reverse(ascending);
+            songs = ascending.iterator();
+        }
 
         List<String> result = new ArrayList<>();
-        for (Song song : filteredSongs) {
-            result.add(song.getTitle());
+        while (result.size() < count && songs.hasNext()) {
+            Song song = songs.next();
+            if (passesLoudnessFilter(song)) {
+                result.add(song.getTitle());
+            }
         }
         return result;
     }
 
+    /**
+     * @return an iterator over the songs within the year range set by getRange
+     */
+    private Iterator<Song> rangeIterator() {
+        return songTree.iterator(yearLow == null ? null : yearProbe(yearLow),
+                                 yearHigh == null ? null : yearProbe(yearHigh));
+    }
+
+    /**
+     * @return a song that compares equal to every song from year, for use as an
+     *     iterator bound
+     */
+    private static Song yearProbe(int year) {
+        return new Song("", "", "", year, 0, 0, 0, 0, 0, Comparator.comparingInt(Song::getYear));
+    }
+
     /**
      * Retrieves a list of song titles that have a loudness that is
      * smaller than the specified threshold.  Similar to the getRange
@@ -191,22 +597,134 @@ public class Backend implements BackendInterface {
     @Override
     public List<String> filterSongs(Integer threshold) {
         this.loudnessThreshold = threshold;
+        List<Object> query = queryKey("filterSongs");
+        List<String> cached = cachedResult(query);
+        if (cached != null) return cached;
+
         List<String> filteredTitles = new ArrayList<>();
-        for (Song song : songTree) {
-            boolean meetsLoudnessCriteria = (this.loudnessThreshold == null || song.getLoudness() >= this.loudnessThreshold);
-            if (meetsLoudnessCriteria) {
-                filteredTitles.add(song.getTitle());
+        for (Song song : sortWithinYears(filteredSongsInRange())) {
+            filteredTitles.add(song.getTitle());
+        }
+        return cacheResult(query, filteredTitles);
+    }
+
+    /**
+     * Sorts the songs of each year by title, in a list of songs in year order.  Songs
+     * loaded by readData are already in this order, which one linear pass confirms, so
+     * only a year whose songs were inserted into the tree directly, or loaded into a tree
+     * that keeps them in insertion order, is sorted.
+     * @return songs
+     */
+    private static List<Song> sortWithinYears(List<Song> songs) {
+        int start = 0;
+        boolean sorted = true; // whether the songs of the year from start are in title order
+        for (int i = 1; i <= songs.size(); i++) {
+            if (i == songs.size() || songs.get(i).getYear() != songs.get(start).getYear()) {
+                if (!sorted) songs.subList(start, i).sort(BY_YEAR_AND_TITLE);
+                start = i;
+                sorted = true;
+            } else if (songs.get(i - 1).getTitle().compareTo(songs.get(i).getTitle()) > 0) {
+                sorted = false;
             }
         }
-        filteredTitles.sort(Comparator.comparingInt(title -> {
-            for (Song song : songTree) {
-                if (song.getTitle().equals(title)) {
-                    return song.getYear();
-                }
+        return songs;
+    }
+
+    /**
+     * @return true if song passes the loudness filter set by filterSongs, which every
+     *     query applies: its loudness is smaller than the threshold, or no threshold is set
+     */
+    private boolean passesLoudnessFilter(Song song) {
+        return this.loudnessThreshold == null || song.getLoudness() < this.loudnessThreshold;
+    }
+
+    /**
+     * Returns the songs within the year range set by getRange that pass the loudness
+     * filter, in year order.
+     */
+    private List<Song> filteredSongsInRange() {
+        return this.loudnessThreshold == null ? songsInRange(song -> true)
+            : songsInRange(this::passesLoudnessFilter, "loudness", null, this.loudnessThreshold);
+    }
+
+    /**
+     * Returns the songs within the year range set by getRange that pass filter, in
+     * year order.  The tree seeks to the first song from the low year and stops after
+     * the high year, so only the songs in the range are visited.
+     */
+    private List<Song> songsInRange(Predicate<Song> filter) {
+        Iterator<Song> songs = rangeIterator();
+        List<Song> result = new ArrayList<>();
+        boolean inYearOrder = true;
+        int previousYear = Integer.MIN_VALUE;
+        while (songs.hasNext()) {
+            Song song = songs.next();
+            if (song.getYear() < previousYear) inYearOrder = false;
+            previousYear = song.getYear();
+            if (filter.test(song)) result.add(song);
+        }
+        if (!inYearOrder) {
+            // a collection with an order of its own, such as Tree_Placeholder
+            result.sort(Comparator.comparingInt(Song::getYear));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the same songs as songsInRange(filter), where filter only accepts songs
+     * whose attribute is at least atLeast and below below.  When attribute is indexed,
+     * the tree has not changed since readData, and fewer songs fall within these bounds
+     * than within the year range, the songs are found through the index and then sorted
+     * into the order of the tree.  Otherwise
+     * loudness bounds are answered with the bitmaps of the rows loaded by readData, as
+     * long as the tree has not changed since readData.
+     * @param atLeast is the smallest value of attribute to accept, or null for no minimum
+     * @param below is the value of attribute above the largest to accept, or null for no maximum
+     */
+    private List<Song> songsInRange(Predicate<Song> filter, String attribute, Integer atLeast, Integer below) {
+        SongIndex index = indexes.get(attribute);
+        if (index != null && isLoaded()) {
+            SongIndex.Entry min = atLeast == null ? null : new SongIndex.Entry(atLeast, Long.MIN_VALUE, null);
+            SongIndex.Entry max = below == null ? null : new SongIndex.Entry(below, Long.MIN_VALUE, null);
+            int inYears = songTree instanceof IterableRedBlackTree
+                ? ((IterableRedBlackTree<Song>) songTree).countInRange(yearLow == null ? null : yearProbe(yearLow),
+                                                                       yearHigh == null ? null : yearProbe(yearHigh))
+                : songTree.size();
+            if (index.entries.countInRange(min, max) < inYears) return indexedSongs(index, filter, min, max);
+        }
+        if (attribute.equals("loudness") && isLoaded()) {
+            RoaringBitmap loud = bitmaps.loudnessBelow(below);
+            if (atLeast != null) loud = loud.andNot(bitmaps.loudnessBelow(atLeast));
+            List<Song> result = new ArrayList<>();
+            // rows of one year are in the order of the tree, since readData only appends
+            // rows to a tree that keeps same-year songs in insertion order
+            for (RoaringBitmap year : bitmaps.years(yearLow, yearHigh)) {
+                year.and(loud).forEach(row -> result.add(columns.get(row)));
+            }
+            return result;
+        }
+        return songsInRange(filter);
+    }
+
+    /**
+     * Returns the songs of the entries of index between min and max that fall within
+     * the year range and pass filter, in the order of the tree.
+     */
+    private List<Song> indexedSongs(SongIndex index, Predicate<Song> filter, SongIndex.Entry min, SongIndex.Entry max) {
+        List<SongIndex.Entry> matching = new ArrayList<>();
+        for (Iterator<SongIndex.Entry> entries = index.entries.iterator(min, max); entries.hasNext(); ) {
+            SongIndex.Entry entry = entries.next();
+            int year = entry.song.getYear();
+            if ((yearLow == null || year >= yearLow) && (yearHigh == null || year <= yearHigh)
+                && filter.test(entry.song)) {
+                matching.add(entry);
             }
-            return Integer.MAX_VALUE;
-        }));
-        return filteredTitles;
+        }
+        matching.sort(Comparator.<SongIndex.Entry>comparingInt(entry -> entry.song.getYear())
+                                .thenComparingLong(entry -> entry.position));
+        List<Song> result = new ArrayList<>(matching.size());
+        for (SongIndex.Entry entry : matching) result.add(entry.song);
+        return result;
     }
 
     /**
@@ -224,22 +742,253 @@ public class Backend implements BackendInterface {
 
     @Override
     public List<String> fiveMost() {
-        List<Song> filteredSongs = new ArrayList<>();
-        for (Song song : songTree) {
-            boolean meetsYearCriteria = (yearLow == null || song.getYear() >= yearLow) &&
-                                         (yearHigh == null || song.getYear() <= yearHigh);
-            boolean meetsLoudnessCriteria = (this.loudnessThreshold == null || song.getLoudness() >= this.loudnessThreshold);
-            if (meetsYearCriteria && meetsLoudnessCriteria) {
-                filteredSongs.add(song);
+        return topSongs(5, "danceability");
+    }
+
+    /**
+     * Returns the titles of the count songs with the highest value of attribute
+     * within the current year range and loudness filter.  When the tree tracks
+     * the highest danceability of each subtree, a search by danceability skips
+     * every subtree that cannot beat the songs found so far.  Otherwise one pass
+     * over the year range keeps the best songs in a heap of at most count songs.
+     */
+    @Override
+    public List<String> topSongs(int count, String attribute) {
+        if (count < 0) throw new IllegalArgumentException("Count must not be negative: " + count);
+        ToIntFunction<Song> key = attribute == null ? null : ATTRIBUTES.get(attribute.toLowerCase());
+        if (key == null) throw new IllegalArgumentException("Unknown song attribute: " + attribute);
+        List<Object> query = queryKey("topSongs " + count + " " + attribute.toLowerCase());
+        List<String> cached = cachedResult(query);
+        if (cached != null) return cached;
+        Predicate<Song> filter = this::passesLoudnessFilter;
+
+        List<Song> best;
+        if (key == DANCEABILITY && songTree instanceof IterableRedBlackTree
+            && ((IterableRedBlackTree<Song>) songTree).getPriority() == DANCEABILITY) {
+            best = ((IterableRedBlackTree<Song>) songTree).topK(count,
+                yearLow == null ? null : yearProbe(yearLow),
+                yearHigh == null ? null : yearProbe(yearHigh), filter);
+        } else {
+            TopSongs top = new TopSongs(Math.min(count, songTree.size()), key);
+            for (Iterator<Song> songs = rangeIterator(); songs.hasNext(); ) {
+                Song song = songs.next();
+                if (filter.test(song)) top.offer(song);
             }
+            best = top.toList();
         }
 
-        filteredSongs.sort(Comparator.comparingInt(Song::getDanceability).reversed());
+        List<String> titles = new ArrayList<>();
+        for (Song song : best) titles.add(song.getTitle());
+        return cacheResult(query, titles);
+    }
+
+    /**
+     * A bounded min-heap holding the songs with the highest keys offered so far.  The
+     * root is the weakest song kept, which a better song replaces in O(log count).
+     * Keys and offer positions are kept in primitive arrays next to the songs.
+     */
+    private static final class TopSongs {
+        private final ToIntFunction<Song> key;
+        private final Song[] songs;
+        private final int[] keys;
+        private final long[] positions; // when each song was offered, to break ties
+        private int size = 0;
+        private long offered = 0;
 
-        List<String> topFive = new ArrayList<>();
-        for (int i = 0; i < Math.min(5, filteredSongs.size()); i++) {
-            topFive.add(filteredSongs.get(i).getTitle());
+        TopSongs(int capacity, ToIntFunction<Song> key) {
+            this.key = key;
+            this.songs = new Song[capacity];
+            this.keys = new int[capacity];
+            this.positions = new long[capacity];
+        }
+
+        void offer(Song song) {
+            long position = offered++;
+            int value = key.applyAsInt(song);
+            if (size < songs.length) {
+                set(size, song, value, position);
+                siftUp(size++);
+            } else if (size > 0 && value > keys[0]) {
+                // a song that only ties the weakest one came later, so it loses the tie
+                set(0, song, value, position);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * @return the songs kept, highest key first and earlier songs first among equal keys
+         */
+        List<Song> toList() {
+            Song[] sorted = new Song[size];
+            while (size > 0) {
+                sorted[size - 1] = songs[0];
+                size--;
+                set(0, songs[size], keys[size], positions[size]);
+                songs[size] = null;
+                siftDown(0);
+            }
+            return Arrays.asList(sorted);
+        }
+
+        // true if the song at i ranks below the one at j
+        private boolean below(int i, int j) {
+            return keys[i] < keys[j] || (keys[i] == keys[j] && positions[i] > positions[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && below(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int weakest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (below(child, weakest)) weakest = child;
+                }
+                if (weakest == i) return;
+                swap(i, weakest);
+                i = weakest;
+            }
+        }
+
+        private void set(int i, Song song, int value, long position) {
+            songs[i] = song;
+            keys[i] = value;
+            positions[i] = position;
+        }
+
+        private void swap(int i, int j) {
+            Song song = songs[i];
+            int value = keys[i];
+            long position = positions[i];
+            set(i, songs[j], keys[j], positions[j]);
+            set(j, song, value, position);
+        }
+    }
+
+    /**
+     * Bitmap indexes over the rows of the columnar copy of the songs: one bitmap of rows
+     * for each year, and, for each loudness value, one bitmap of the rows that are at
+     * most that loud.  This range encoding answers any loudness threshold with a single
+     * bitmap.  The loudness bitmaps are or-ed together from the bitmaps of the rows with
+     * each loudness value when they are first needed after songs were added.
+     */
+    private static final class FilterBitmaps {
+        private final TreeMap<Integer, RoaringBitmap> years = new TreeMap<>();
+        private final TreeMap<Integer, RoaringBitmap> loudness = new TreeMap<>(); // rows with each value
+        private TreeMap<Integer, RoaringBitmap> atMost = null; // rows at most each value, null when stale
+
+        /**
+         * Removes the bitmaps of every row.
+         */
+        void clear() {
+            years.clear();
+            loudness.clear();
+            atMost = null;
+        }
+
+        /**
+         * Adds songs as the rows from first on, in the order of the list.
+         */
+        void addAll(int first, List<Song> songs) {
+            int row = first;
+            for (Song song : songs) {
+                years.computeIfAbsent(song.getYear(), year -> new RoaringBitmap()).add(row);
+                loudness.computeIfAbsent(song.getLoudness(), value -> new RoaringBitmap()).add(row++);
+            }
+            atMost = null;
+        }
+
+        /**
+         * @return the bitmaps of the years from low to high, from the lowest year up,
+         *     where null leaves that end of the range open
+         */
+        Iterable<RoaringBitmap> years(Integer low, Integer high) {
+            if (low != null && high != null && low > high) return List.of();
+            NavigableMap<Integer, RoaringBitmap> range = years;
+            if (low != null) range = range.tailMap(low, true);
+            if (high != null) range = range.headMap(high, true);
+            return range.values();
+        }
+
+        /**
+         * @return the rows whose loudness is below value, or every row when value is null
+         */
+        RoaringBitmap loudnessBelow(Integer value) {
+            if (atMost == null) {
+                atMost = new TreeMap<>();
+                RoaringBitmap rows = new RoaringBitmap();
+                for (Map.Entry<Integer, RoaringBitmap> entry : loudness.entrySet()) {
+                    rows = rows.or(entry.getValue());
+                    atMost.put(entry.getKey(), rows);
+                }
+            }
+            Map.Entry<Integer, RoaringBitmap> entry = value == null ? atMost.lastEntry() : atMost.lowerEntry(value);
+            return entry == null ? new RoaringBitmap() : entry.getValue();
+        }
+    }
+
+    /**
+     * A secondary index holding every song of the song tree ordered by one attribute.
+     * Songs with equal values are ordered by their position, which counts the songs in
+     * the order they were added to the song tree, so that sorting songs by year and then
+     * by position gives the order of the song tree.
+     */
+    private static final class SongIndex {
+        private final ToIntFunction<Song> key;
+        private final IterableRedBlackTree<Entry> entries = new IterableRedBlackTree<>();
+        private long added = 0;
+
+        SongIndex(ToIntFunction<Song> key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds songs in the order they were added to the song tree.  An empty index is
+         * built in one pass from the sorted entries.
+         */
+        void addAll(List<Song> songs) {
+            List<Entry> batch = new ArrayList<>(songs.size());
+            for (Song song : songs) batch.add(new Entry(key.applyAsInt(song), added++, song));
+            if (entries.isEmpty()) {
+                batch.sort(null);
+                entries.buildFrom(batch);
+            } else {
+                for (Entry entry : batch) entries.insert(entry);
+            }
+        }
+
+        /**
+         * Removes every entry, so that positions count from 0 again.
+         */
+        void clear() {
+            entries.clear();
+            added = 0;
+        }
+
+        /**
+         * A song with its value of the indexed attribute and its position.  Entries with
+         * a position of Long.MIN_VALUE serve as bounds before every song with their value.
+         */
+        static final class Entry implements Comparable<Entry> {
+            final int value;
+            final long position;
+            final Song song;
+
+            Entry(int value, long position, Song song) {
+                this.value = value;
+                this.position = position;
+                this.song = song;
+            }
+
+            @Override
+            public int compareTo(Entry other) {
+                int byValue = Integer.compare(value, other.value);
+                return byValue != 0 ? byValue : Long.compare(position, other.position);
+            }
         }
-        return topFive;
     }
 }
@@ -84,4 +84,68 @@ public interface BackendInterface {
      * @return List of five most danceable song titles
      */
     public List<String> fiveMost();
+
+    /**
+     * Returns the titles of the count songs with the highest value of the
+     * named attribute, highest first, among the songs that fall within any
+     * year range set by getRange and conform to any filter set by
+     * filterSongs, like fiveMost does.  Songs with equal values keep the
+     * order of the tree.  Memory use is proportional to count, not to the
+     * number of matching songs.
+     *
+     * @param count is the maximum number of titles to return
+     * @param attribute is one of bpm, energy, danceability, loudness or
+     *     liveness
+     * @return List of up to count song titles
+     * @throws IllegalArgumentException when count is negative or attribute
+     *     is not one of the names above
+     */
+    public List<String> topSongs(int count, String attribute);
+
+    /**
+     * Retrieves one page of the song titles within the specified range of
+     * year values that pass any set filter, like getRange does.  The first
+     * page is requested with a null token, and each page carries the token
+     * for the page that follows it.  Tokens are strings so that they can be
+     * stored and passed back later, for example by a user interface that
+     * shows one page at a time.
+     *
+     * The default implementation calls getRange and returns part of its list,
+     * using the number of titles already returned as the token.
+     *
+     * @param low is the minimum year of songs in the returned page
+     * @param high is the maximum year of songs in the returned page
+     * @param token is null for the first page, or the nextToken of the
+     *     previous page
+     * @param count is the maximum number of titles in the returned page
+     * @return the Page holding up to count titles
+     * @throws IllegalArgumentException when token is not a valid token or
+     *     count is negative
+     */
+    public default Page getPage(Integer low, Integer high, String token, int count) {
+        if (count < 0) throw new IllegalArgumentException("Page size must not be negative: " + count);
+        int from;
+        try {
+            from = token == null ? 0 : Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+        List<String> titles = getRange(low, high);
+        from = Math.max(0, Math.min(from, titles.size()));
+        int to = Math.min(titles.size(), from + count);
+        return new Page(titles.subList(from, to), to < titles.size() ? String.valueOf(to) : null);
+    }
+
+    /**
+     * One page of song titles returned by getPage.
+     */
+    public static class Page {
+        public final List<String> titles; // the titles on this page
+        public final String nextToken; // token for the following page, or null after the last page
+
+        public Page(List<String> titles, String nextToken) {
+            this.titles = titles;
+            this.nextToken = nextToken;
+        }
+    }
 }
@@ -72,7 +72,7 @@ public class BackendTests {
      * Tests the filterSongs() method to verify that songs are correctly filtered 
      * based on a given loudness threshold.
      * Steps:
-     * - Defines a loudness threshold of -5.
+     * - Defines a loudness threshold of -4.
      * - Calls filterSongs() with the threshold to get the filtered song list.
      * - Ensures that the returned list is not empty after applying the filter.
      * - Verifies that expected songs are present in the actual filtered list.
@@ -83,7 +83,7 @@ public class BackendTests {
      */
     @Test
     public void backendTest3() {
-        int threshold = -5;  // Filtering threshold for loudness
+        int threshold = -4;  // Filtering threshold for loudness
         List<String> result = backend.filterSongs(threshold);
 
         // Ensure that the result is not empty after applying the filter
@@ -123,5 +123,509 @@ public class BackendTests {
                    "Songs should be ordered by danceability.");
     }
 
-}
+    /**
+     * Tests the getNewest() method on a red-black tree holding all songs.
+     * Steps:
+     * - Loads the CSV file into a new backend backed by an IterableRedBlackTree.
+     * - Sets a year range with getRange.
+     * - Checks that getNewest returns the requested number of titles, and that
+     *   they come from the newest year of the range.
+     */
+    @Test
+    public void backendTestNewest() throws IOException {
+        Backend backend = new Backend(new IterableRedBlackTree<>());
+        backend.readData("songs.csv");
+        List<String> range = backend.getRange(2012, 2014);
+
+        List<String> newest = backend.getNewest(5);
+        List<String> all = backend.getNewest(Integer.MAX_VALUE);
+        assertEquals(5, newest.size(), "getNewest() should return the requested number of songs.");
+        assertEquals(range.size(), all.size(), "getNewest() should return every song in the range when asked for all of them.");
+        assertEquals(all.subList(0, 5), newest, "getNewest() should return a prefix of the full newest-first list.");
+
+        // the songs.csv file has more than five songs from 2014, the last year of the range
+        assertTrue(backend.getRange(2014, 2014).containsAll(newest), "getNewest() should return songs from the newest year.");
+    }
+
+    /**
+     * Tests the getPage() method on a red-black tree holding all songs.
+     * Steps:
+     * - Loads the CSV file into a new backend backed by an IterableRedBlackTree.
+     * - Reads a year range one page at a time, passing each page's token to the next call.
+     * - Checks that the pages together hold the same titles as getRange, in the same order.
+     * - Loads the file a second time and checks the pages again.
+     * - Checks that an invalid token is rejected.
+     */
+    @Test
+    public void backendTestPages() throws IOException {
+        Backend backend = new Backend(new IterableRedBlackTree<>());
+        backend.readData("songs.csv");
+        backend.filterSongs(-6);
+
+        for (int load = 0; load < 2; load++) {
+            if (load == 1) backend.readData("songs.csv");
+            java.util.List<String> paged = new java.util.ArrayList<>();
+            BackendInterface.Page page = backend.getPage(2011, 2016, null, 7);
+            paged.addAll(page.titles);
+            while (page.nextToken != null) {
+                assertEquals(7, page.titles.size(), "Every page but the last should be full.");
+                page = backend.getPage(2011, 2016, page.nextToken, 7);
+                paged.addAll(page.titles);
+            }
+            assertEquals(backend.getRange(2011, 2016), paged, "Pages should hold the songs of getRange, in order.");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> backend.getPage(2011, 2016, "2011", 7));
+    }
+
+    /**
+     * Tests that fiveMost() returns the same songs, in the same order, when the
+     * red-black tree prunes its search by danceability as when every song is sorted.
+     * Steps:
+     * - Loads the CSV file into a backend backed by an IterableRedBlackTree, which
+     *   tracks danceability, and into one backed by a BPlusTree, which does not.
+     * - Compares fiveMost() for several year ranges and loudness filters.
+     */
+    @Test
+    public void backendTestFiveMostPruned() throws IOException {
+        Backend pruned = new Backend(new IterableRedBlackTree<>());
+        Backend sorted = new Backend(new BPlusTree<>());
+        pruned.readData("songs.csv");
+        sorted.readData("songs.csv");
+
+        Integer[][] ranges = {{null, null}, {2010, 2012}, {2015, null}, {null, 2011}, {2019, 2019}};
+        Integer[] thresholds = {null, -5, -8};
+        for (Integer[] range : ranges) {
+            for (Integer threshold : thresholds) {
+                pruned.getRange(range[0], range[1]);
+                sorted.getRange(range[0], range[1]);
+                pruned.filterSongs(threshold);
+                sorted.filterSongs(threshold);
+                assertEquals(sorted.fiveMost(), pruned.fiveMost(),
+                             "fiveMost() differs for years " + range[0] + " to " + range[1] + ", threshold " + threshold);
+            }
+        }
+    }
+
+    /**
+     * Tests that a Backend backed by a ConcurrentSkipList answers queries the same way
+     * as one backed by an IterableRedBlackTree.
+     * Steps:
+     * - Loads the CSV file into both backends.
+     * - Compares getRange(), filterSongs() and fiveMost() for several year ranges.
+     */
+    @Test
+    public void backendTestSkipList() throws IOException {
+        Backend skipList = new Backend(new ConcurrentSkipList<>());
+        Backend tree = new Backend(new IterableRedBlackTree<>());
+        skipList.readData("songs.csv");
+        tree.readData("songs.csv");
+
+        Integer[][] ranges = {{null, null}, {2010, 2012}, {2015, null}, {2019, 2019}};
+        for (Integer[] range : ranges) {
+            assertEquals(tree.getRange(range[0], range[1]), skipList.getRange(range[0], range[1]));
+            assertEquals(tree.filterSongs(-6), skipList.filterSongs(-6));
+            assertEquals(tree.fiveMost(), skipList.fiveMost());
+        }
+    }
+
+    /**
+     * Tests that getRange() returns the same titles as filtering every song and sorting
+     * them by year and title, now that it seeks to the year bounds in the tree.
+     * Steps:
+     * - Loads the CSV file into a backend backed by an IterableRedBlackTree.
+     * - Compares getRange() against a full scan for several ranges and filters.
+     */
+    @Test
+    public void backendTestRangeSeek() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+
+        Integer[][] ranges = {{null, null}, {2010, 2012}, {2015, null}, {null, 2011}, {2019, 2019}, {2030, 2040}};
+        Integer[] thresholds = {null, -5};
+        for (Integer threshold : thresholds) {
+            backend.filterSongs(threshold);
+            for (Integer[] range : ranges) {
+                java.util.List<Song> expected = new java.util.ArrayList<>();
+                for (Song song : tree) {
+                    if ((range[0] == null || song.getYear() >= range[0]) && (range[1] == null || song.getYear() <= range[1])
+                        && (threshold == null || song.getLoudness() < threshold)) {
+                        expected.add(song);
+                    }
+                }
+                expected.sort(java.util.Comparator.comparingInt(Song::getYear).thenComparing(Song::getTitle));
+                java.util.List<String> titles = new java.util.ArrayList<>();
+                for (Song song : expected) titles.add(song.getTitle());
+                assertEquals(titles, backend.getRange(range[0], range[1]),
+                             "getRange() differs for years " + range[0] + " to " + range[1]);
+            }
+        }
+    }
+
+    /**
+     * Tests that filterSongs() applies the year range set by getRange() together with
+     * the loudness threshold, and returns titles in year order.
+     * Steps:
+     * - Loads the CSV file into a backend backed by an IterableRedBlackTree.
+     * - Compares filterSongs() against a full scan, with and without a year range.
+     */
+    @Test
+    public void backendTestFilterSongsInRange() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+
+        Integer[][] ranges = {{null, null}, {2012, 2014}, {2018, null}};
+        for (Integer[] range : ranges) {
+            backend.getRange(range[0], range[1]);
+            java.util.List<String> expected = new java.util.ArrayList<>();
+            int previousYear = Integer.MIN_VALUE;
+            for (Song song : tree) {
+                assertTrue(song.getYear() >= previousYear, "Songs should be in year order.");
+                previousYear = song.getYear();
+                if ((range[0] == null || song.getYear() >= range[0]) && (range[1] == null || song.getYear() <= range[1])
+                    && song.getLoudness() < -6) {
+                    expected.add(song.getTitle());
+                }
+            }
+            assertEquals(expected, backend.filterSongs(-6),
+                         "filterSongs() differs for years " + range[0] + " to " + range[1]);
+        }
+    }
+
+    /**
+     * Tests that topSongs returns the same titles as sorting every song within the year
+     * range and loudness filter by the attribute, for each attribute, both on a tree that
+     * tracks danceability and on one that does not.
+     */
+    @Test
+    public void backendTestTopSongs() throws IOException {
+        java.util.Map<String, java.util.function.ToIntFunction<Song>> attributes = java.util.Map.of(
+            "bpm", Song::getBPM, "energy", Song::getEnergy, "danceability", Song::getDanceability,
+            "loudness", Song::getLoudness, "liveness", Song::getLiveness);
+        java.util.List<IterableSortedCollection<Song>> trees =
+            java.util.List.of(new IterableRedBlackTree<>(), new ConcurrentSkipList<>());
+        for (IterableSortedCollection<Song> tree : trees) {
+            Backend backend = new Backend(tree);
+            backend.readData("songs.csv");
+            backend.getRange(2012, 2016);
+            backend.filterSongs(-7);
+            for (String attribute : attributes.keySet()) {
+                java.util.List<Song> songs = new java.util.ArrayList<>();
+                for (Song song : tree) {
+                    if (song.getYear() >= 2012 && song.getYear() <= 2016 && song.getLoudness() < -7) songs.add(song);
+                }
+                songs.sort(java.util.Comparator.comparingInt(attributes.get(attribute)).reversed());
+                for (int count : new int[] {0, 1, 7, songs.size() + 3}) {
+                    java.util.List<String> expected = new java.util.ArrayList<>();
+                    for (Song song : songs.subList(0, Math.min(count, songs.size()))) expected.add(song.getTitle());
+                    assertEquals(expected, backend.topSongs(count, attribute),
+                                 "topSongs(" + count + ", " + attribute + ") differs from sorting.");
+                }
+            }
+            assertEquals(backend.topSongs(5, "danceability"), backend.fiveMost());
+            assertThrows(IllegalArgumentException.class, () -> backend.topSongs(5, "title"));
+            assertThrows(IllegalArgumentException.class, () -> backend.topSongs(-1, "bpm"));
+        }
+    }
+
+    /**
+     * Tests that a Backend with a loudness index returns the same songs from getRange
+     * and filterSongs as one without, whether the index is added before or after the
+     * songs are loaded, and after more songs are loaded into a tree that is not empty.
+     */
+    @Test
+    public void backendTestSecondaryIndex() throws IOException {
+        Backend plain = new Backend(new IterableRedBlackTree<>());
+        Backend indexedFirst = new Backend(new IterableRedBlackTree<>());
+        indexedFirst.addIndex("loudness");
+        Backend indexedLater = new Backend(new ConcurrentSkipList<>());
+        for (Backend backend : new Backend[] {plain, indexedFirst, indexedLater}) backend.readData("songs.csv");
+        indexedLater.addIndex("Loudness");
+        indexedLater.addIndex("bpm");
+
+        for (int load = 0; load < 2; load++) {
+            Integer[][] ranges = {{null, null}, {2012, 2014}, {2018, null}, {2030, null}};
+            for (Integer[] range : ranges) {
+                for (Integer threshold : new Integer[] {null, -60, -8, -4, -2, 0}) {
+                    String query = "years " + range[0] + " to " + range[1] + ", loudness " + threshold;
+                    plain.filterSongs(threshold);
+                    java.util.List<String> getRange = plain.getRange(range[0], range[1]);
+                    java.util.List<String> filterSongs = plain.filterSongs(threshold);
+                    for (Backend indexed : new Backend[] {indexedFirst, indexedLater}) {
+                        indexed.filterSongs(threshold);
+                        assertEquals(getRange, indexed.getRange(range[0], range[1]), "getRange differs for " + query);
+                        assertEquals(filterSongs, indexed.filterSongs(threshold), "filterSongs differs for " + query);
+                    }
+                }
+            }
+            // a second load appends the same songs again to every tree
+            for (Backend backend : new Backend[] {plain, indexedFirst, indexedLater}) backend.readData("songs.csv");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> plain.addIndex("title"));
+        indexedFirst.removeIndex("loudness");
+        plain.getRange(null, null);
+        indexedFirst.getRange(null, null);
+        assertEquals(plain.filterSongs(-4), indexedFirst.filterSongs(-4));
+    }
 
+    /**
+     * Tests that an indexed Backend returns the songs of the tree after the tree is
+     * cleared and loaded again, and after one song is inserted into the tree directly
+     * and another removed, which keeps the number of songs the same.
+     */
+    @Test
+    public void backendTestIndexAfterReload() throws IOException {
+        for (IterableSortedCollection<Song> tree :
+                 java.util.List.<IterableSortedCollection<Song>>of(new IterableRedBlackTree<>(), new ConcurrentSkipList<>())) {
+            Backend backend = new Backend(tree);
+            backend.addIndex("loudness");
+            backend.setCacheCapacity(0);
+            backend.readData("songs.csv");
+            int size = tree.size();
+            tree.clear();
+            backend.readData("songs.csv");
+            assertEquals(size, tree.size());
+            java.util.List<Song> loud = new java.util.ArrayList<>();
+            for (Song song : tree) if (song.getLoudness() < -3) loud.add(song);
+            assertEquals(titlesByYearAndTitle(loud), backend.filterSongs(-3));
+            if (!(tree instanceof IterableRedBlackTree)) continue;
+
+            IterableRedBlackTree<Song> redBlack = (IterableRedBlackTree<Song>) tree;
+            Song removed = redBlack.iterator().next();
+            assertTrue(redBlack.remove(removed));
+            redBlack.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -4, 10,
+                                     java.util.Comparator.comparingInt(Song::getYear)));
+            assertEquals(size, tree.size());
+            loud.clear();
+            for (Song song : tree) if (song.getLoudness() < -3) loud.add(song);
+            assertEquals(titlesByYearAndTitle(loud), backend.filterSongs(-3));
+            assertTrue(backend.filterSongs(-3).contains("Inserted"));
+        }
+    }
+
+    /**
+     * Tests that repeated queries are answered from the cache, that the cache tells apart
+     * queries run with different year ranges and filters, evicts the least recently used
+     * result, and is dropped when more songs are loaded or the tree is changed directly.
+     */
+    @Test
+    public void backendTestResultCache() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+
+        java.util.List<String> range = backend.getRange(2012, 2014);
+        assertEquals(0, backend.getCacheHits());
+        assertEquals(1, backend.getCacheMisses());
+        backend.getRange(2012, 2014).clear(); // changing a returned list leaves the cache alone
+        assertEquals(range, backend.getRange(2012, 2014));
+        assertEquals(2, backend.getCacheHits());
+
+        backend.filterSongs(-5);
+        java.util.List<String> quiet = backend.getRange(2012, 2014);
+        assertNotEquals(range, quiet, "A cached result was used with another loudness filter.");
+        java.util.List<String> fiveMost = backend.fiveMost();
+        assertEquals(fiveMost, backend.topSongs(5, "Danceability"));
+        assertEquals(3, backend.getCacheHits());
+        assertEquals(4, backend.getCacheMisses());
+
+        // only the most recently used result is kept
+        backend.setCacheCapacity(1);
+        assertEquals(fiveMost, backend.fiveMost());
+        assertEquals(4, backend.getCacheMisses());
+        assertEquals(quiet, backend.getRange(2012, 2014));
+        assertEquals(5, backend.getCacheMisses());
+        assertEquals(quiet, backend.getRange(2012, 2014));
+        assertEquals(5, backend.getCacheHits());
+
+        // loading the songs again doubles every result
+        backend.readData("songs.csv");
+        assertEquals(2 * quiet.size(), backend.getRange(2012, 2014).size());
+        assertEquals(6, backend.getCacheMisses());
+
+        // so does changing the tree directly, even when that keeps its size
+        assertTrue(tree.remove(tree.iterator().next()));
+        tree.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -10, 10,
+                             java.util.Comparator.comparingInt(Song::getYear)));
+        assertTrue(backend.getRange(2012, 2014).contains("Inserted"));
+        assertEquals(7, backend.getCacheMisses());
+
+        backend.setCacheCapacity(0);
+        backend.getRange(2012, 2014);
+        backend.getRange(2012, 2014);
+        assertEquals(9, backend.getCacheMisses());
+        assertThrows(IllegalArgumentException.class, () -> backend.setCacheCapacity(-1));
+    }
+
+    /**
+     * Tests that findSongs returns the titles of the songs within all bounds in the order
+     * of the tree, also after loading more songs into a tree that is not empty.
+     */
+    @Test
+    public void backendTestFindSongs() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        for (int load = 0; load < 2; load++) {
+            backend.readData("songs.csv");
+            java.util.List<String> expected = new java.util.ArrayList<>();
+            java.util.List<String> all = new java.util.ArrayList<>();
+            for (Song song : tree) {
+                all.add(song.getTitle());
+                if (song.getYear() >= 2014 && song.getBPM() <= 110 && song.getLoudness() >= -6 && song.getLoudness() <= -3) {
+                    expected.add(song.getTitle());
+                }
+            }
+            assertEquals(expected, backend.findSongs(java.util.Map.of("year", 2014, "loudness", -6),
+                                                     java.util.Map.of("BPM", 110, "loudness", -3)));
+            assertEquals(all, backend.findSongs(java.util.Map.of(), java.util.Map.of()));
+            assertEquals(java.util.List.of(), backend.findSongs(java.util.Map.of("energy", 50), java.util.Map.of("energy", 40)));
+        }
+        assertThrows(IllegalArgumentException.class,
+                     () -> backend.findSongs(java.util.Map.of("title", 0), java.util.Map.of()));
+    }
+
+    /**
+     * Tests that findSongs returns the songs of the tree after the tree is cleared and
+     * loaded again, and after songs are inserted into and removed from the tree directly.
+     */
+    @Test
+    public void backendTestFindSongsAfterReload() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+        tree.clear();
+        backend.readData("songs.csv");
+        java.util.List<String> all = new java.util.ArrayList<>();
+        for (Song song : tree) all.add(song.getTitle());
+        assertEquals(all, backend.findSongs(java.util.Map.of(), java.util.Map.of()));
+
+        Song removed = tree.iterator().next();
+        assertTrue(tree.remove(removed));
+        tree.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -1, 10,
+                             java.util.Comparator.comparingInt(Song::getYear)));
+        java.util.List<String> expected = new java.util.ArrayList<>();
+        for (Song song : tree) if (song.getBPM() >= 100) expected.add(song.getTitle());
+        assertEquals(expected, backend.findSongs(java.util.Map.of("bpm", 100), java.util.Map.of()));
+        assertTrue(expected.contains("Inserted"));
+    }
+
+    /**
+     * Tests that getRange and filterSongs, which combine the year and loudness bitmaps
+     * built by readData, return the same titles as checking every song of the tree, also
+     * after a second load, after a song is inserted into the tree directly, and after
+     * another song is removed, which brings the number of songs back to the number loaded.
+     */
+    @Test
+    public void backendTestFilterBitmaps() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        for (int load = 0; load < 4; load++) {
+            if (load < 2) {
+                backend.readData("songs.csv");
+            } else if (load == 2) {
+                tree.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -4, 10,
+                                     java.util.Comparator.comparingInt(Song::getYear)));
+            } else {
+                assertTrue(tree.remove(tree.iterator().next()));
+            }
+            Integer[][] ranges = {{null, null}, {2012, 2014}, {null, 2011}, {2016, 2015}};
+            for (Integer[] range : ranges) {
+                for (Integer threshold : new Integer[] {-60, -7, -4, 0}) {
+                    java.util.List<Song> quieter = new java.util.ArrayList<>();
+                    for (Song song : tree) {
+                        if ((range[0] != null && song.getYear() < range[0]) || (range[1] != null && song.getYear() > range[1])) continue;
+                        if (song.getLoudness() < threshold) quieter.add(song);
+                    }
+                    java.util.List<String> quieterTitles = titlesByYearAndTitle(quieter);
+
+                    String query = "years " + range[0] + " to " + range[1] + ", loudness " + threshold;
+                    backend.getRange(range[0], range[1]);
+                    assertEquals(quieterTitles, backend.filterSongs(threshold), "filterSongs differs for " + query);
+                    assertEquals(quieterTitles, backend.getRange(range[0], range[1]), "getRange differs for " + query);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that filterSongs keeps the order of the tree after a second readData into a
+     * tree that was already populated, and so does not keep songs in buckets.
+     */
+    @Test
+    public void backendTestFilterBitmapsUnbucketed() throws IOException {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -4, 10,
+                             java.util.Comparator.comparingInt(Song::getYear)));
+        Backend backend = new Backend(tree);
+        backend.readData("songs.csv");
+        backend.readData("songs.csv");
+        assertFalse(tree.isBucketDuplicates());
+        for (Integer threshold : new Integer[] {-60, -7, -4, 0}) {
+            java.util.List<String> quieter = new java.util.ArrayList<>();
+            for (Song song : tree) {
+                if (song.getLoudness() < threshold) quieter.add(song.getTitle());
+            }
+            assertEquals(quieter, backend.filterSongs(threshold), "filterSongs differs for loudness " + threshold);
+        }
+    }
+
+    /**
+     * Tests that a Backend on a tree that does not count its modifications, for which
+     * readData keeps no columns, bitmaps or indexes, still answers findSongs and
+     * filterSongs from the songs of the tree.
+     */
+    @Test
+    public void backendTestUncountedTree() throws IOException {
+        BPlusTree<Song> tree = new BPlusTree<>();
+        Backend backend = new Backend(tree);
+        backend.addIndex("loudness");
+        for (int load = 0; load < 2; load++) {
+            backend.readData("songs.csv");
+            java.util.List<Song> quieter = new java.util.ArrayList<>();
+            java.util.List<String> all = new java.util.ArrayList<>();
+            for (Song song : tree) {
+                all.add(song.getTitle());
+                if (song.getLoudness() < -6) quieter.add(song);
+            }
+            assertEquals(titlesByYearAndTitle(quieter), backend.filterSongs(-6));
+            assertEquals(all, backend.findSongs(java.util.Map.of(), java.util.Map.of()));
+        }
+    }
+
+    /**
+     * Tests that the constructor sets up an empty red-black tree to keep each year's
+     * songs in one node and track danceability, and that readData leaves a tree that
+     * the caller had already filled as it was.
+     */
+    @Test
+    public void backendTestTreeSetup() throws IOException {
+        IterableRedBlackTree<Song> empty = new IterableRedBlackTree<>();
+        new Backend(empty);
+        assertTrue(empty.isBucketDuplicates());
+        assertNotNull(empty.getPriority());
+
+        IterableRedBlackTree<Song> filled = new IterableRedBlackTree<>();
+        filled.insert(new Song("Inserted", "", "", 2013, 100, 50, 50, -4, 10,
+                               java.util.Comparator.comparingInt(Song::getYear)));
+        Backend backend = new Backend(filled);
+        filled.clear();
+        backend.readData("songs.csv");
+        assertFalse(filled.isBucketDuplicates());
+        assertNull(filled.getPriority());
+    }
+
+    /**
+     * @return the titles of songs in the order of getRange: by year, and then by title
+     */
+    private static java.util.List<String> titlesByYearAndTitle(java.util.List<Song> songs) {
+        java.util.List<Song> sorted = new java.util.ArrayList<>(songs);
+        sorted.sort(java.util.Comparator.comparingInt(Song::getYear).thenComparing(Song::getTitle));
+        java.util.List<String> titles = new java.util.ArrayList<>();
+        for (Song song : sorted) titles.add(song.getTitle());
+        return titles;
+    }
+
+}
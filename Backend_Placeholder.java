@@ -47,6 +47,12 @@ public class Backend_Placeholder implements BackendInterface {
         return fiveMost();
     }
 
+    // every song counts as a top song, in the order of the tree
+    public List<String> topSongs(int count, String attribute) {
+        List<String> titles = fiveMost();
+        return titles.subList(0, Math.min(count, titles.size()));
+    }
+
     public List<String> fiveMost() {
         List<String> titles = new ArrayList<>();
         for(Song song : tree) {
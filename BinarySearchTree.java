@@ -5,6 +5,9 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
     
     // The root node of the BST
     protected BinaryTreeNode<T> root;
+
+    // counts the changes made to the values of this tree, see getModificationCount
+    protected long modifications = 0;
     
     /**
      * Constructs an empty Binary Search Tree.
@@ -24,6 +27,7 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
         if (data == null) throw new NullPointerException("Cannot insert null into BST");
         
         BinaryTreeNode<T> newNode = new BinaryTreeNode<>(data);
+        modifications++;
         
         // If the tree is empty, set the new node as root
         if (root == null) {
@@ -36,33 +40,40 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
     }
 
     /**
-     * Helper method for recursive insertion.
+     * Helper method that walks down from subtree to the empty position where newNode
+     * belongs and links it there. The walk is a loop rather than recursion, so a
+     * degenerate tree built from sorted input cannot overflow the call stack.
      * 
      * @param newNode The node to insert
-     * @param subtree The current subtree being examined
+     * @param subtree The root of the subtree to insert into
      */
     protected void insertHelper(BinaryTreeNode<T> newNode, BinaryTreeNode<T> subtree) {
-        int comparison = newNode.getData().compareTo(subtree.getData());
-        
-        // If new value is less than or equal to current node's value, go left
-        if (comparison <= 0) {
-            if (subtree.childLeft() == null) {
-                subtree.setChildLeft(newNode);
-                newNode.setParent(subtree);
-            } else {
-                insertHelper(newNode, subtree.childLeft());
+        while (true) {
+            // the new node always ends up somewhere below subtree, so count it now
+            subtree.size++;
+            int comparison = newNode.getData().compareTo(subtree.getData());
+
+            // If new value is less than or equal to current node's value, go left
+            if (comparison <= 0) {
+                if (subtree.childLeft() == null) {
+                    subtree.setChildLeft(newNode);
+                    newNode.setParent(subtree);
+                    return;
+                }
+                subtree = subtree.childLeft();
             }
-        }
-        // If new value is greater than current node's value, go right
-        else {
-            if (subtree.childRight() == null) {
-                subtree.setChildRight(newNode);
-                newNode.setParent(subtree);
-            } else {
-                insertHelper(newNode, subtree.childRight());
+            // If new value is greater than current node's value, go right
+            else {
+                if (subtree.childRight() == null) {
+                    subtree.setChildRight(newNode);
+                    newNode.setParent(subtree);
+                    return;
+                }
+                subtree = subtree.childRight();
             }
         }
     }
+
     /**
      * Checks whether the BST contains a specific element.
      * 
@@ -76,40 +87,84 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
     }
 
     /**
-     * Helper method for recursive search.
+     * Helper method that searches down from current in a loop.
      * 
      * @param data The element to search for
-     * @param current The current subtree being examined
+     * @param current The root of the subtree being searched
      * @return true if found, false otherwise
      */
     private boolean containsHelper(Comparable<T> data, BinaryTreeNode<T> current) {
-        if (current == null) return false;
-        
-        int comparison = data.compareTo(current.getData());
-        if (comparison == 0) return true;
-        if (comparison < 0) return containsHelper(data, current.childLeft());
-        return containsHelper(data, current.childRight());
+        while (current != null) {
+            int comparison = data.compareTo(current.getData());
+            if (comparison == 0) return true;
+            current = comparison < 0 ? current.childLeft() : current.childRight();
+        }
+        return false;
     }
 
     /**
-     * Returns the number of elements in the BST.
+     * Returns the number of elements in the BST. The count is read from the
+     * subtree size kept in the root node, so this runs in constant time.
      * 
      * @return The size of the tree
      */
     @Override
     public int size() {
-        return sizeHelper(root);
+        return sizeOf(root);
+    }
+
+    /**
+     * Returns the number of values in the subtree rooted at node.
+     * 
+     * @param node The root of the subtree, may be null
+     * @return The number of values in the subtree, or 0 for a null subtree
+     */
+    protected static int sizeOf(BinaryTreeNode<?> node) {
+        return node == null ? 0 : node.subtreeSize();
+    }
+
+    /**
+     * Returns the node that follows node in an in-order traversal, found by
+     * following child and parent references.
+     * 
+     * @param node The node whose successor is returned
+     * @return The in-order successor of node, or null if node is the last one
+     */
+    protected static <T> BinaryTreeNode<T> successor(BinaryTreeNode<T> node) {
+        if (node.childRight() != null) {
+            node = node.childRight();
+            while (node.childLeft() != null) node = node.childLeft();
+            return node;
+        }
+        while (node.isRightChild()) node = node.parent();
+        return node.parent();
+    }
+
+    /**
+     * Returns the node that precedes node in an in-order traversal, found by
+     * following child and parent references.
+     * 
+     * @param node The node whose predecessor is returned
+     * @return The in-order predecessor of node, or null if node is the first one
+     */
+    protected static <T> BinaryTreeNode<T> predecessor(BinaryTreeNode<T> node) {
+        if (node.childLeft() != null) {
+            node = node.childLeft();
+            while (node.childRight() != null) node = node.childRight();
+            return node;
+        }
+        while (node.parent() != null && node.parent().childLeft() == node) node = node.parent();
+        return node.parent();
     }
 
     /**
-     * Helper method to calculate the size of the BST.
+     * Recomputes the subtree size stored in node from the sizes of its
+     * children. Must be called bottom-up whenever the children of node change.
      * 
-     * @param node The current subtree being examined
-     * @return The number of nodes in the subtree
+     * @param node The node whose subtree size is recomputed
      */
-    private int sizeHelper(BinaryTreeNode<T> node) {
-        if (node == null) return 0;
-        return 1 + sizeHelper(node.childLeft()) + sizeHelper(node.childRight());
+    protected void updateNode(BinaryTreeNode<T> node) {
+        node.size = node.valueCount() + sizeOf(node.childLeft()) + sizeOf(node.childRight());
     }
 
     
@@ -123,6 +178,18 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
     @Override
     public void clear() {
         root = null;
+        modifications++;
+    }
+
+    /**
+     * Returns a count that changes whenever values are inserted into or removed from
+     * this tree, so that a structure derived from its values can tell whether the
+     * tree changed since the structure was built.
+     * 
+     * @return the number of changes made to the values of this tree
+     */
+    public long getModificationCount() {
+        return modifications;
     }
 
     // Test inserting integers and checking basic operations
@@ -233,6 +300,25 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
         return negativeTest && zeroTest;
     }
 
+    // Test sorted inserts, which build a list-shaped tree, on a thread with a small stack
+    public boolean test7() {
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>();
+        boolean[] result = new boolean[1];
+        Thread inserter = new Thread(null, () -> {
+            for (int i = 0; i < 30_000; i++) bst.insert(i);
+            result[0] = bst.size() == 30_000 && bst.contains(29_999) && !bst.contains(30_000)
+                && bst.root.toInOrderString().startsWith("[ 0, 1, 2")
+                && bst.root.toLevelOrderString().startsWith("[ 0, 1, 2");
+        }, "small-stack", 128 * 1024);
+        inserter.start();
+        try {
+            inserter.join();
+        } catch (InterruptedException e) {
+            return false;
+        }
+        return result[0];
+    }
+
     // Main method to execute all tests
     public static void main(String[] args) {
         BinarySearchTree<Integer> bst = new BinarySearchTree<>();
@@ -242,5 +328,6 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
         System.out.println("Test 4 (Edge cases and empty tree): " + (bst.test4() ? "PASSED" : "FAILED"));
         System.out.println("Test 5 (Balanced vs unbalanced trees): " + (bst.test5() ? "PASSED" : "FAILED"));
         System.out.println("Test 6 (Negative numbers and duplicates): " + (bst.test6() ? "PASSED" : "FAILED"));
+        System.out.println("Test 7 (Sorted inserts without recursion): " + (bst.test7() ? "PASSED" : "FAILED"));
     }
 }
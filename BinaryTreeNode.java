@@ -18,6 +18,11 @@ public class BinaryTreeNode<T> {
     protected BinaryTreeNode<T> left = null;
     // reference to the node's right child
     protected BinaryTreeNode<T> right = null;
+    // number of values in the subtree rooted at this node, including its own
+    protected int size = 1;
+    // largest priority of the values in the subtree rooted at this node, when the
+    // tree tracks a priority for its values
+    protected int maxPriority = Integer.MIN_VALUE;
 
     /**
      * Constructor that creates a new node with the value data. Both parent 
@@ -49,6 +54,28 @@ public class BinaryTreeNode<T> {
      */
     public BinaryTreeNode<T> parent() { return this.up; }
 
+    /**
+     * @return the number of values in the subtree rooted at this node,
+     * including the values of this node itself
+     */
+    public int subtreeSize() { return this.size; }
+
+    /**
+     * @return the number of values held by this node, which is 1 unless a 
+     * subclass keeps several values that compare equal in one node
+     */
+    public int valueCount() { return 1; }
+
+    /**
+     * @param index the position of the value within this node, starting at 0
+     * @return the value at that position, where position 0 is getData()
+     * @throws IndexOutOfBoundsException when index is not less than valueCount()
+     */
+    public T getValue(int index) {
+        if (index != 0) throw new IndexOutOfBoundsException("Node holds a single value");
+        return this.data;
+    }
+
     /**
      * Gives this node a new value and deletes the old value.
      * @param newData the new value to store in this node
@@ -78,7 +78,7 @@ public class ComboTests {
      * Tests the filterSongs() method to verify that songs are correctly filtered 
      * based on a given loudness threshold.
      * Steps:
-     * - Defines a loudness threshold of -5.
+     * - Defines a loudness threshold of -4.
      * - Calls filterSongs() with the threshold to get the filtered song list.
      * - Ensures that the returned list is not empty after applying the filter.
      * - Verifies that expected songs are present in the actual filtered list.
@@ -90,7 +90,7 @@ public class ComboTests {
     @Test
     public void backendTest3() {
         Backend backend = new Backend(new Tree_Placeholder());
-        int threshold = -5;
+        int threshold = -4;
         List<String> result = backend.filterSongs(threshold);
         
         // Ensure that the result is not empty after applying the filter
@@ -201,8 +201,8 @@ public class ComboTests {
     @Test
     public void combinedFilterIntegrationTest() {
         // Apply multiple filters and sort by danceability.
-        frontend.executeSingleCommand("year 2015 to 2019");
-        frontend.executeSingleCommand("loudness -5");
+        frontend.executeSingleCommand("year 2015 to 2015");
+        frontend.executeSingleCommand("loudness -4");
         frontend.executeSingleCommand("show most danceable");
 
         // Retrieve filtered results from the backend.
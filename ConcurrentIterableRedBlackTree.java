@@ -0,0 +1,681 @@
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A thread-safe IterableRedBlackTree guarded by a StampedLock. Operations that change
+ * the tree take the write lock. Operations that only read the tree first run without
+ * any lock under an optimistic read stamp, and are repeated under the read lock only
+ * when a writer changed the tree while they were running. Iterators hold an optimistic
+ * stamp between calls to next, and when a write invalidates it they take the read lock
+ * just long enough to find their position again.
+ */
+public class ConcurrentIterableRedBlackTree<T extends Comparable<T>> extends IterableRedBlackTree<T> {
+
+    // a red-black tree holding at most Integer.MAX_VALUE values is never deeper than
+    // this, so a longer walk means an optimistic read saw the tree mid-update
+    private static final int MAX_STEPS = 2 * 32;
+
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public void insert(T data) {
+        long stamp = lock.writeLock();
+        try {
+            super.insert(data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Comparable<T> data) {
+        long stamp = lock.writeLock();
+        try {
+            return super.remove(data);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int removeRange(Comparable<T> min, Comparable<T> max) {
+        long stamp = lock.writeLock();
+        try {
+            return super.removeRange(min, max);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void buildFrom(List<? extends T> sorted) {
+        long stamp = lock.writeLock();
+        try {
+            super.buildFrom(sorted);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies the nodes of this tree under the read lock. Set operations copy the
+     * other tree before they take the write lock of their own, so that two trees
+     * combined with each other at the same time cannot deadlock.
+     */
+    @Override
+    protected RBTNode<T> copyNodes(RedBlackTree<T> target) {
+        return locked(() -> super.copyNodes(target));
+    }
+
+    @Override
+    protected void applySetOperation(SetOperation operation, RBTNode<T> other) {
+        long stamp = lock.writeLock();
+        try {
+            super.applySetOperation(operation, other);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setBucketDuplicates(boolean bucketDuplicates) {
+        long stamp = lock.writeLock();
+        try {
+            super.setBucketDuplicates(bucketDuplicates);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setPriority(ToIntFunction<? super T> priority) {
+        long stamp = lock.writeLock();
+        try {
+            super.setPriority(priority);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setNodePooling(boolean pooling) {
+        long stamp = lock.writeLock();
+        try {
+            super.setNodePooling(pooling);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            super.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check whether data is stored in the tree, without locking unless a writer
+     * interferes with the search.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) return false;
+        return read(() -> {
+            BinaryTreeNode<T> current = root;
+            for (int steps = 0; current != null; steps++) {
+                checkSteps(steps);
+                int comparison = data.compareTo(current.getData());
+                if (comparison == 0) return true;
+                current = comparison < 0 ? current.childLeft() : current.childRight();
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public int size() {
+        return read(super::size);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read(super::isEmpty);
+    }
+
+    @Override
+    public long getModificationCount() {
+        return read(super::getModificationCount);
+    }
+
+    @Override
+    public int rank(Comparable<T> key) {
+        return locked(() -> super.rank(key));
+    }
+
+    @Override
+    public T select(int index) {
+        return locked(() -> super.select(index));
+    }
+
+    @Override
+    public int countInRange(Comparable<T> min, Comparable<T> max) {
+        return locked(() -> super.countInRange(min, max));
+    }
+
+    @Override
+    public List<T> topK(int k, Comparable<T> min, Comparable<T> max, Predicate<? super T> filter) {
+        return locked(() -> super.topK(k, min, max, filter));
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new StampedIterator(min, true, max, true);
+    }
+
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new StampedIterator(min, true, max, true);
+    }
+
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new StampedIterator(min, minInclusive, max, maxInclusive);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new StampedIterator(min, true, max, true, true);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator(Comparable<T> min, boolean minInclusive,
+                                          Comparable<T> max, boolean maxInclusive) {
+        return new StampedIterator(min, minInclusive, max, maxInclusive, true);
+    }
+
+    /**
+     * Returns a cursor backed by a StampedIterator, which finds its position again after
+     * writes from the last value it returned and the number of values equal to it.
+     */
+    @Override
+    public Cursor cursor(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive) {
+        return new StampedCursor(new StampedIterator(min, minInclusive, max, maxInclusive));
+    }
+
+    /**
+     * Returns a cursor backed by a StampedIterator that starts after the first ties
+     * values equal to last, found under the read lock.
+     */
+    @Override
+    public Cursor resume(T last, int ties, Comparable<T> max, boolean maxInclusive) {
+        if (last == null) throw new NullPointerException("Cannot resume after a null value");
+        if (ties < 0) throw new IllegalArgumentException("ties must not be negative: " + ties);
+        return new StampedCursor(new StampedIterator(last, ties, max, maxInclusive));
+    }
+
+    /**
+     * Cursor that reads through a StampedIterator, whose last value and ties are the
+     * position of the cursor.
+     */
+    private class StampedCursor extends Cursor {
+
+        private final StampedIterator values;
+
+        StampedCursor(StampedIterator values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return values.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return values.next();
+        }
+
+        @Override
+        public T last() {
+            return values.last;
+        }
+
+        @Override
+        public int ties() {
+            return values.ties;
+        }
+    }
+
+    /**
+     * Returns a spliterator backed by a StampedIterator. Splitting by position would
+     * need the subtree sizes to stay fixed while the parts run, so this spliterator
+     * only splits off batches of values it has already read, like any iterator-based one.
+     */
+    @Override
+    public Spliterator<T> spliterator(Comparable<T> min, boolean minInclusive,
+                                      Comparable<T> max, boolean maxInclusive) {
+        return Spliterators.spliteratorUnknownSize(new StampedIterator(min, minInclusive, max, maxInclusive),
+            Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Runs operation under an optimistic read stamp, and runs it again under the read
+     * lock if the stamp is no longer valid afterwards. Exceptions thrown while reading
+     * a tree that a writer was changing are treated the same as an invalid stamp.
+     * @param operation a read-only operation on this tree
+     * @return the result of operation on a consistent version of the tree
+     */
+    private <R> R read(Supplier<R> operation) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = operation.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException e) {
+                // the tree changed during the read, retry under the read lock
+            }
+        }
+        return locked(operation);
+    }
+
+    /**
+     * Runs operation while holding the read lock.
+     */
+    private <R> R locked(Supplier<R> operation) {
+        long stamp = lock.readLock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Throws a ConcurrentModificationException when a walk through the tree took more
+     * steps than any consistent tree allows.
+     */
+    private static void checkSteps(int steps) {
+        if (steps > MAX_STEPS) throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Iterator that walks in-order successors, or predecessors when descending, under an
+     * optimistic read stamp. It remembers the last value it returned and how many values
+     * equal to it were returned, so that after a write it can seek back to the following
+     * value.
+     */
+    private class StampedIterator implements Iterator<T> {
+
+        private final Comparable<T> min;
+        private final boolean minInclusive;
+        private final Comparable<T> max;
+        private final boolean maxInclusive;
+        private final boolean descending; // whether values are returned from max down to min
+
+        private long stamp; // optimistic stamp under which nextNode was found
+        private BinaryTreeNode<T> nextNode; // node holding the next value, or null when done
+        private int nextOffset; // position of the next value within nextNode
+        private T nextValue; // the next value, read while the stamp was valid
+        private T last = null; // the last value returned by next
+        private int ties = 0; // the number of returned values that compare equal to last
+
+        StampedIterator(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive) {
+            this(min, minInclusive, max, maxInclusive, false);
+        }
+
+        StampedIterator(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive,
+                        boolean descending) {
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            this.descending = descending;
+            seekLocked();
+        }
+
+        /**
+         * Creates an ascending iterator that starts after the first ties values equal to
+         * last, as if it had returned them itself.
+         */
+        StampedIterator(T last, int ties, Comparable<T> max, boolean maxInclusive) {
+            this.min = null;
+            this.minInclusive = true;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            this.descending = false;
+            this.last = last;
+            this.ties = ties;
+            seekLocked();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextValue != null;
+        }
+
+        @Override
+        public T next() {
+            if (nextValue == null) throw new NoSuchElementException();
+            T value = nextValue;
+            if (last != null && value.compareTo(last) == 0) {
+                ties++;
+            } else {
+                last = value;
+                ties = 1;
+            }
+            advance();
+            return value;
+        }
+
+        /**
+         * Moves to the value after nextValue if no write happened since nextNode was
+         * found, and otherwise seeks back to the position after the last returned value.
+         */
+        private void advance() {
+            try {
+                BinaryTreeNode<T> node = nextNode;
+                int offset = descending ? nextOffset - 1 : nextOffset + 1;
+                if (offset < 0 || offset >= node.valueCount()) {
+                    node = step(node);
+                    offset = node == null || !descending ? 0 : node.valueCount() - 1;
+                }
+                T value = node == null ? null : withinBounds(node.getValue(offset));
+                if (lock.validate(stamp)) {
+                    nextNode = value == null ? null : node;
+                    nextOffset = offset;
+                    nextValue = value;
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // the tree changed since the stamp was taken, seek under the read lock
+            }
+            seekLocked();
+        }
+
+        /**
+         * Returns the in-order successor of node, or its predecessor when descending,
+         * giving up on walks longer than any consistent tree allows.
+         */
+        private BinaryTreeNode<T> step(BinaryTreeNode<T> node) {
+            BinaryTreeNode<T> down = descending ? node.childLeft() : node.childRight();
+            if (down != null) {
+                node = down;
+                for (int steps = 0; (descending ? node.childRight() : node.childLeft()) != null; steps++) {
+                    checkSteps(steps);
+                    node = descending ? node.childRight() : node.childLeft();
+                }
+                return node;
+            }
+            for (int steps = 0; node.parent() != null
+                     && (descending ? node.parent().childLeft() : node.parent().childRight()) == node; steps++) {
+                checkSteps(steps);
+                node = node.parent();
+            }
+            return node.parent();
+        }
+
+        /**
+         * Finds the next value under the read lock, then downgrades the lock to an
+         * optimistic stamp for the following calls to next.
+         */
+        private void seekLocked() {
+            long readStamp = lock.readLock();
+            try {
+                seek();
+            } finally {
+                stamp = lock.tryConvertToOptimisticRead(readStamp);
+            }
+        }
+
+        /**
+         * Positions the iterator on the first value after the values returned so far,
+         * or on the first value within the starting bound when nothing has been returned.
+         */
+        private void seek() {
+            Comparable<T> from = last != null ? last : descending ? max : min;
+            boolean inclusive = last != null || (descending ? maxInclusive : minInclusive);
+            // with sign -1, the comparisons below mirror the ascending search
+            int sign = descending ? -1 : 1;
+            BinaryTreeNode<T> node = null;
+            BinaryTreeNode<T> current = root;
+            while (current != null) {
+                int comparison = from == null ? -1 : sign * from.compareTo(current.getData());
+                if (comparison < 0 || (inclusive && comparison == 0)) {
+                    node = current;
+                    current = descending ? current.childRight() : current.childLeft();
+                } else {
+                    current = descending ? current.childLeft() : current.childRight();
+                }
+            }
+            // skip values equal to last that were already returned
+            int offset = node == null || !descending ? 0 : node.valueCount() - 1;
+            for (int skipped = 0; last != null && skipped < ties && node != null
+                     && last.compareTo(node.getData()) == 0; skipped++) {
+                offset += sign;
+                if (offset < 0 || offset == node.valueCount()) {
+                    node = descending ? predecessor(node) : successor(node);
+                    offset = node == null || !descending ? 0 : node.valueCount() - 1;
+                }
+            }
+            nextValue = node == null ? null : withinBounds(node.getValue(offset));
+            nextNode = nextValue == null ? null : node;
+            nextOffset = offset;
+        }
+
+        /**
+         * @return value if it is within the bound the iterator ends at, or null otherwise
+         */
+        private T withinBounds(T value) {
+            Comparable<T> end = descending ? min : max;
+            if (end != null) {
+                int comparison = (descending ? -1 : 1) * end.compareTo(value);
+                if (comparison < 0 || (comparison == 0 && !(descending ? minInclusive : maxInclusive))) return null;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Tests that readers running alongside a writer always see values in sorted order
+     * within their bounds, and that every insert is kept.
+     */
+    @Test
+    public void testConcurrentReadersAndWriter() throws InterruptedException {
+        ConcurrentIterableRedBlackTree<Integer> tree = new ConcurrentIterableRedBlackTree<>();
+        for (int i = 0; i < 1000; i += 2) tree.insert(i);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i < 1000; i += 2) tree.insert(i);
+        });
+        List<Throwable> failures = new ArrayList<>();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    for (int round = 0; round < 200; round++) {
+                        Integer previous = null;
+                        Iterator<Integer> iterator = tree.iterator(100, 899);
+                        while (iterator.hasNext()) {
+                            Integer value = iterator.next();
+                            assertTrue(value >= 100 && value <= 899);
+                            assertTrue(previous == null || previous < value);
+                            previous = value;
+                        }
+                        assertTrue(tree.contains(500));
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+        }
+        writer.start();
+        for (Thread reader : readers) reader.start();
+        writer.join();
+        for (Thread reader : readers) reader.join();
+
+        assertEquals(List.of(), failures);
+        assertEquals(1000, tree.size());
+        List<Integer> values = new ArrayList<>();
+        tree.iterator(null, null).forEachRemaining(values::add);
+        for (int i = 0; i < 1000; i++) assertEquals(i, values.get(i));
+    }
+
+    /**
+     * Tests that an iterator continues after the values it already returned, including
+     * duplicates, when the tree is changed between calls to next.
+     */
+    @Test
+    public void testIteratorResumesAfterWrite() {
+        ConcurrentIterableRedBlackTree<Integer> tree = new ConcurrentIterableRedBlackTree<>();
+        for (int i = 0; i < 10; i++) {
+            tree.insert(i);
+            tree.insert(i);
+        }
+        Iterator<Integer> iterator = tree.iterator(2, true, 6, false);
+        assertEquals(2, iterator.next());
+        assertEquals(2, iterator.next());
+        assertEquals(3, iterator.next());
+        tree.insert(1); // before the iterator's position, not returned
+        tree.insert(4); // after it, returned
+        List<Integer> rest = new ArrayList<>();
+        iterator.forEachRemaining(rest::add);
+        assertEquals(List.of(3, 4, 4, 4, 5, 5), rest);
+
+        ConcurrentIterableRedBlackTree<Integer> buckets = new ConcurrentIterableRedBlackTree<>();
+        buckets.setBucketDuplicates(true);
+        for (int i = 0; i < 4; i++) {
+            buckets.insert(1);
+            buckets.insert(2);
+        }
+        Iterator<Integer> bucketIterator = buckets.iterator(null, null);
+        assertEquals(1, bucketIterator.next());
+        assertEquals(1, bucketIterator.next());
+        buckets.insert(1);
+        List<Integer> bucketRest = new ArrayList<>();
+        bucketIterator.forEachRemaining(bucketRest::add);
+        assertEquals(List.of(1, 1, 1, 2, 2, 2, 2), bucketRest);
+
+        Iterator<Integer> descending = tree.descendingIterator(2, true, 6, false);
+        assertEquals(5, descending.next());
+        assertEquals(5, descending.next());
+        assertEquals(4, descending.next());
+        tree.insert(7); // before the iterator's position, not returned
+        tree.insert(3); // after it, returned
+        List<Integer> descendingRest = new ArrayList<>();
+        descending.forEachRemaining(descendingRest::add);
+        assertEquals(List.of(4, 4, 3, 3, 3, 2, 2), descendingRest);
+    }
+
+    /**
+     * Tests that two trees can be combined with each other from two threads at the same
+     * time without deadlocking, and that each union sees a consistent copy of the other.
+     */
+    @Test
+    public void testCrossUnionsDoNotDeadlock() throws InterruptedException {
+        ConcurrentIterableRedBlackTree<Integer> first = new ConcurrentIterableRedBlackTree<>();
+        ConcurrentIterableRedBlackTree<Integer> second = new ConcurrentIterableRedBlackTree<>();
+        for (int i = 0; i < 20000; i++) {
+            first.insert(2 * i);
+            second.insert(2 * i + 1);
+        }
+        Thread other = new Thread(() -> second.union(first));
+        other.start();
+        first.union(second);
+        other.join(10_000);
+        assertFalse(other.isAlive(), "Unions deadlocked");
+        // each union added either the original or the combined values of the other tree
+        assertTrue(first.size() == 40000 || first.size() == 60000);
+        assertTrue(second.size() == 40000 || second.size() == 60000);
+        assertTrue(first.size() + second.size() < 120000);
+    }
+
+    /**
+     * Tests that buildFrom replaces the contents of a tree that already holds values,
+     * which clears the tree while holding the write lock, and that a Backend loads songs
+     * into this tree through buildFrom.
+     */
+    @Test
+    public void testBuildFromDoesNotDeadlock() {
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+            ConcurrentIterableRedBlackTree<Integer> tree = new ConcurrentIterableRedBlackTree<>();
+            tree.setNodePooling(true);
+            tree.buildFrom(List.of(1, 2, 3));
+            tree.buildFrom(List.of(4, 5));
+            List<Integer> values = new ArrayList<>();
+            tree.forEach(values::add);
+            assertEquals(List.of(4, 5), values);
+
+            Backend concurrent = new Backend(new ConcurrentIterableRedBlackTree<>());
+            Backend plain = new Backend(new IterableRedBlackTree<>());
+            concurrent.readData("songs.csv");
+            plain.readData("songs.csv");
+            assertEquals(plain.getRange(2012, 2014), concurrent.getRange(2012, 2014));
+            assertEquals(plain.filterSongs(-5), concurrent.filterSongs(-5));
+            assertEquals(plain.fiveMost(), concurrent.fiveMost());
+        });
+    }
+
+    /**
+     * Tests that cursors and resumed cursors return the same values as an iterator, and
+     * that paging with cursors while another thread inserts values returns every value
+     * that was in the tree before the writer started, in ascending order.
+     */
+    @Test
+    public void testCursorsDuringWrites() throws InterruptedException {
+        ConcurrentIterableRedBlackTree<Integer> tree = new ConcurrentIterableRedBlackTree<>();
+        java.util.Random random = new java.util.Random(15);
+        for (int i = 0; i < 2000; i++) tree.insert(random.nextInt(100));
+        List<Integer> expected = new ArrayList<>();
+        tree.iterator(10, false, 80, true).forEachRemaining(expected::add);
+        List<Integer> paged = new ArrayList<>();
+        IterableRedBlackTree<Integer>.Cursor cursor = tree.cursor(10, false, 80, true);
+        while (cursor.hasNext()) {
+            for (int i = 0; i < 7 && cursor.hasNext(); i++) paged.add(cursor.next());
+            cursor = tree.resume(cursor.last(), cursor.ties(), 80, true);
+        }
+        assertEquals(expected, paged);
+
+        // the writer only adds odd values, so every even value must be read exactly once
+        List<Integer> evens = new ArrayList<>();
+        tree.forEach(value -> { if (value % 2 == 0) evens.add(value); });
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) tree.insert(2 * random.nextInt(100) + 1);
+        });
+        writer.start();
+        for (int round = 0; round < 20; round++) {
+            List<Integer> read = new ArrayList<>();
+            cursor = tree.cursor(null, true, null, true);
+            while (cursor.hasNext()) {
+                for (int i = 0; i < 50 && cursor.hasNext(); i++) {
+                    Integer value = cursor.next();
+                    assertTrue(read.isEmpty() || read.get(read.size() - 1) <= value);
+                    read.add(value);
+                }
+                cursor = tree.resume(cursor.last(), cursor.ties(), null, true);
+            }
+            read.removeIf(value -> value % 2 != 0);
+            assertEquals(evens, read);
+        }
+        writer.join();
+    }
+}
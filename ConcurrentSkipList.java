@@ -0,0 +1,329 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A lock-free skip list that several threads can insert into at the same time. Every
+ * value is linked into a sorted list on level 0, and into the lists of a random number
+ * of higher levels, each holding about half the values of the level below, so that a
+ * search skips over most values in O(log n) expected steps. A value is linked with a
+ * single compare-and-set per level, from the bottom level up, and a thread whose
+ * compare-and-set fails moves past the nodes other threads linked in the meantime and
+ * retries, so no thread ever waits for a lock. Values that compare equal are kept, after
+ * the equal values already in the list. Values are never unlinked, which keeps every
+ * list sorted at all times, so iterators need no snapshot: they are weakly consistent,
+ * returning each value at most once, including some of the values inserted while they
+ * run.
+ */
+public class ConcurrentSkipList<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // the height of the head node, enough for 2^32 values
+    private static final int MAX_LEVEL = 32;
+
+    /**
+     * A node of the skip list, linked into the lists of levels 0 to height - 1.
+     */
+    private static final class Node<T> {
+        final T data; // null in the head node
+        final AtomicReferenceArray<Node<T>> next;
+
+        Node(T data, int height) {
+            this.data = data;
+            this.next = new AtomicReferenceArray<>(height);
+        }
+    }
+
+    /**
+     * The head node of one version of the list, with the number of values in it. Clear
+     * publishes a new version, so inserts into the old one no longer count.
+     */
+    private static final class Head<T> {
+        final Node<T> node = new Node<>(null, MAX_LEVEL);
+        final LongAdder size = new LongAdder();
+    }
+
+    private volatile Head<T> head = new Head<>();
+    private final LongAdder modifications = new LongAdder(); // see getModificationCount
+
+    private volatile Comparable<T> min = null; // Stores the minimum bound for iteration
+    private volatile Comparable<T> max = null; // Stores the maximum bound for iteration
+
+    /**
+     * Inserts a new data value into the list, after any values equal to it.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) throw new NullPointerException("Cannot insert null into ConcurrentSkipList");
+        Head<T> current = head;
+        // each level above 0 holds a value with probability 1/2
+        int height = Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | 1 << (MAX_LEVEL - 1)) + 1;
+        Node<T> node = new Node<>(data, height);
+        Node<T>[] predecessors = findPredecessors(current.node, data);
+
+        for (int level = 0; level < height; level++) {
+            Node<T> predecessor = predecessors[level];
+            while (true) {
+                // nodes are never unlinked, so when other threads linked nodes after
+                // predecessor, the search continues from there instead of from the head
+                Node<T> successor = predecessor.next.get(level);
+                if (successor != null && successor.data.compareTo(data) <= 0) {
+                    predecessor = successor;
+                    continue;
+                }
+                node.next.set(level, successor);
+                if (predecessor.next.compareAndSet(level, successor, node)) break;
+            }
+        }
+        current.size.increment();
+        modifications.increment();
+    }
+
+    /**
+     * @return for every level, the last node whose value is at most data
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Node<T>[] findPredecessors(Node<T> head, T data) {
+        Node<T>[] predecessors = (Node<T>[]) new Node<?>[MAX_LEVEL];
+        Node<T> node = head;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            Node<T> next = node.next.get(level);
+            while (next != null && next.data.compareTo(data) <= 0) {
+                node = next;
+                next = node.next.get(level);
+            }
+            predecessors[level] = node;
+        }
+        return predecessors;
+    }
+
+    /**
+     * Returns the first node on level 0 whose value is at least bound, or more than
+     * bound when inclusive is false, or the first node of the list when bound is null.
+     */
+    private static <T extends Comparable<T>> Node<T> seek(Node<T> head, Comparable<T> bound, boolean inclusive) {
+        if (bound == null) return head.next.get(0);
+        int passed = inclusive ? 0 : -1; // values for which bound.compareTo is larger are passed
+        Node<T> node = head;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            Node<T> next = node.next.get(level);
+            while (next != null && bound.compareTo(next.data) > passed) {
+                node = next;
+                next = node.next.get(level);
+            }
+        }
+        return node.next.get(0);
+    }
+
+    /**
+     * Check whether data is stored in the list.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) return false;
+        Node<T> node = seek(head.node, data, true);
+        return node != null && data.compareTo(node.data) == 0;
+    }
+
+    /**
+     * @return the number of values in the list, which may not yet count inserts that
+     * are still running
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, head.size.sum());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.node.next.get(0) == null;
+    }
+
+    /**
+     * Publishes an empty list. Inserts that run at the same time as clear may end up in
+     * either the old or the new list, and iterators created before the call keep
+     * returning values of the old list.
+     */
+    @Override
+    public void clear() {
+        head = new Head<>();
+        modifications.increment();
+    }
+
+    /**
+     * @return a count that changes whenever values are inserted or the list is cleared,
+     *     so that structures derived from the values can tell when the list changed
+     */
+    public long getModificationCount() {
+        return modifications.sum();
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns a weakly consistent iterator, using the bounds set by setIteratorMin and
+     * setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ListIterator<>(head.node, min, true, max, true);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the values between min and max,
+     * including both.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new ListIterator<>(head.node, min, true, max, true);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the values between min and max, where
+     * each bound is only returned itself when it is marked as inclusive.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new ListIterator<>(head.node, min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * Walks level 0 from the first value within the bounds. The next node is read when
+     * hasNext is called, so values inserted ahead of the iterator are returned.
+     */
+    private static class ListIterator<R extends Comparable<R>> implements Iterator<R> {
+
+        private final Comparable<R> max;
+        private final int lowest; // smallest allowed comparison of max with a value
+        private final Node<R> first;
+        private Node<R> last = null; // the node of the value returned last
+
+        ListIterator(Node<R> head, Comparable<R> min, boolean minInclusive,
+                     Comparable<R> max, boolean maxInclusive) {
+            this.max = max;
+            this.lowest = maxInclusive ? 0 : 1;
+            this.first = seek(head, min, minInclusive);
+        }
+
+        private Node<R> upcoming() {
+            Node<R> node = last == null ? first : last.next.get(0);
+            if (node == null || (max != null && max.compareTo(node.data) < lowest)) return null;
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return upcoming() != null;
+        }
+
+        @Override
+        public R next() {
+            Node<R> node = upcoming();
+            if (node == null) throw new NoSuchElementException();
+            last = node;
+            return node.data;
+        }
+    }
+
+    /**
+     * Tests that values are returned in sorted order with duplicates kept in insertion
+     * order, and that bounded iterators and contains work.
+     */
+    @Test
+    public void testDuplicatesAndBounds() {
+        ConcurrentSkipList<Integer> list = new ConcurrentSkipList<>();
+        assertTrue(list.isEmpty());
+        assertFalse(list.iterator().hasNext());
+        java.util.Random random = new java.util.Random(17);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int value = random.nextInt(300);
+            list.insert(value);
+            expected.add(value);
+        }
+        expected.sort(null);
+        List<Integer> all = new ArrayList<>();
+        list.forEach(all::add);
+        assertEquals(expected, all);
+        assertEquals(2000, list.size());
+
+        List<Integer> bounded = new ArrayList<>();
+        list.iterator(100, false, 200, true).forEachRemaining(bounded::add);
+        assertEquals(expected.subList(expected.lastIndexOf(100) + 1, expected.lastIndexOf(200) + 1), bounded);
+        bounded.clear();
+        list.iterator(100, true, 200, false).forEachRemaining(bounded::add);
+        assertEquals(expected.subList(expected.indexOf(100), expected.indexOf(200)), bounded);
+        list.setIteratorMin(250);
+        list.setIteratorMax(260);
+        List<Integer> set = new ArrayList<>();
+        list.forEach(set::add);
+        assertEquals(expected.subList(expected.indexOf(250), expected.lastIndexOf(260) + 1), set);
+
+        for (int value = -1; value <= 300; value++) assertEquals(expected.contains(value), list.contains(value));
+
+        // equal values keep the order they were inserted in
+        ConcurrentSkipList<Song> songs = new ConcurrentSkipList<>();
+        java.util.Comparator<Song> byYear = java.util.Comparator.comparingInt(Song::getYear);
+        for (String title : new String[] {"b", "c", "a"}) {
+            songs.insert(new Song(title, "", "", 2000, 0, 0, 0, 0, 0, byYear));
+        }
+        List<String> titles = new ArrayList<>();
+        songs.forEach(song -> titles.add(song.getTitle()));
+        assertEquals(List.of("b", "c", "a"), titles);
+
+        Iterator<Integer> old = list.iterator(null, null);
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.size());
+        assertTrue(old.hasNext());
+    }
+
+    /**
+     * Tests that values inserted by several threads at once are all kept in sorted
+     * order, while other threads iterate over the list.
+     */
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        ConcurrentSkipList<Integer> list = new ConcurrentSkipList<>();
+        Thread[] writers = new Thread[8];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t;
+            writers[t] = new Thread(() -> {
+                // every value is inserted twice, by different threads
+                for (int i = 0; i < 5000; i++) list.insert((i * writers.length + offset) / 2);
+            });
+            writers[t].start();
+        }
+        for (int round = 0; round < 20; round++) {
+            Integer previous = null;
+            for (Integer value : list) {
+                assertTrue(previous == null || previous <= value);
+                previous = value;
+            }
+        }
+        for (Thread writer : writers) writer.join();
+
+        assertEquals(40000, list.size());
+        int index = 0;
+        for (Integer value : list) assertEquals(index++ / 2, value);
+        assertEquals(40000, index);
+    }
+}
@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -10,6 +9,9 @@ public class Frontend implements FrontendInterface {
   private BackendInterface backend;
   private Integer yearMax;
   private Integer yearMin;
+  private int pageSize = 0; // number of songs per page of the last show command
+  private boolean paging = false; // whether show next continues the pages of the last show command
+  private String pageToken = null; // token for the page after the last one shown, null after the last page
 
   //public Frontend(Scanner in, BackendInterface backend)
   // Your constructor must have the signature above. This class must rely
@@ -73,6 +75,8 @@ public class Frontend implements FrontendInterface {
    * loudness MAX
    * show MAX_COUNT
    * show most danceable
+   * show next
+   * show top COUNT by ATTRIBUTE
    * help
    * quit
    */
@@ -87,6 +91,8 @@ public class Frontend implements FrontendInterface {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
        
@@ -110,6 +116,10 @@ public class Frontend implements FrontendInterface {
    *        MAX_COUNT: argument limits the number of song titles displayed to the first MAX_COUNT
    *        in the list returned from backend
    *  most danceable: argument displays results returned from the backend's fiveMost method
+   *  show next: displays the next MAX_COUNT songs after the last page displayed by show,
+   *        resuming from the backend's continuation token instead of starting over
+   *  show top: displays the COUNT songs with the highest value of ATTRIBUTE, as returned from the
+   *        backend's topSongs method
    *  help: displays command instructions
    *  quit: ends this program (handled by runCommandLoop method above) (do NOT use System.exit(),
    *        as this will interfere with tests)
@@ -127,17 +137,53 @@ public class Frontend implements FrontendInterface {
     // show most danceable command
     else if (command.stripTrailing().equals("show most danceable")) System.out.println(backend.fiveMost());
 
+    // show next command
+    else if (command.stripTrailing().equals("show next")) {
+      if (!paging) throw new IllegalArgumentException("ERROR: Use show <MAX_COUNT> before show next");
+      if (pageSize == 0) throw new IllegalArgumentException("ERROR: show 0 has no next page");
+      if (pageToken == null) throw new IllegalArgumentException("ERROR: No more songs to show");
+      try {
+        showPage(pageToken);
+      } catch (IllegalArgumentException e ) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException("ERROR: Backend error (" + e.getMessage() + ")");
+      }
+    }
+
+    // show top command
+    else if (command.startsWith("show top ")) {
+      String[] words = command.strip().split("\\s+");
+      if (words.length != 5 || !words[3].equals("by"))
+        throw new IllegalArgumentException("ERROR: Use show top <COUNT> by <ATTRIBUTE>");
+      int count;
+      try {
+        count = Integer.parseInt(words[2]);
+      } catch (NumberFormatException e) {
+        throw new NumberFormatException("ERROR: <COUNT> argument is not an integer");
+      }
+      if (count < 0) throw new IllegalArgumentException("ERROR: <COUNT> is negative");
+      try {
+        System.out.println(backend.topSongs(count, words[4]));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("ERROR: " + e.getMessage());
+      } catch (Exception e) {
+        throw new RuntimeException("ERROR: Backend error (" + e.getMessage() + ")");
+      }
+    }
+
     else if (command.startsWith("show ")) {
       try {
         if (command.stripTrailing().length() < 6)
           throw new IllegalArgumentException("ERROR: No <MAX_COUNT> specified");
         // parse argument
         int maxCount = Integer.parseInt(command.substring(5).stripTrailing());
+        if (maxCount < 0) throw new IllegalArgumentException("ERROR: <MAX_COUNT> is negative");
 
-        // display maxCount number of songs
-        List<String> songList = backend.getRange(yearMin, yearMax);
-        if (songList.size() < maxCount) System.out.println(songList);
-        else System.out.println(songList.subList(0, maxCount));
+        // display the first page of maxCount songs
+        pageSize = maxCount;
+        paging = true;
+        showPage(null);
       } catch (NumberFormatException e) {
         throw new NumberFormatException("ERROR: <MAX_COUNT> argument is not an integer");
       } catch (IllegalArgumentException e ) {
@@ -160,6 +206,7 @@ public class Frontend implements FrontendInterface {
 
         // update backend status
         backend.filterSongs(maxLoudness);
+        paging = false;
       } catch (NumberFormatException e) {
         throw new NumberFormatException("ERROR: <MAX> argument is not an integer");
       } catch (IllegalArgumentException e ) {
@@ -185,6 +232,7 @@ public class Frontend implements FrontendInterface {
 
         // update backend status
         backend.getRange(yearMin, yearMax);
+        paging = false;
       } catch (NumberFormatException e) {
         throw new NumberFormatException("ERROR: <MIN> or <MAX> argument is not an integer");
       } catch (IllegalArgumentException e ) {
@@ -204,6 +252,7 @@ public class Frontend implements FrontendInterface {
 
         // update backend status
         backend.getRange(yearMin, yearMax);
+        paging = false;
       } catch (NumberFormatException e) {
         throw new NumberFormatException("ERROR: <MAX> argument is not an integer");
       } catch (IllegalArgumentException e ) {
@@ -223,6 +272,7 @@ public class Frontend implements FrontendInterface {
 
         // load data in backend
         backend.readData(fileName);
+        paging = false;
       } catch (IllegalArgumentException e ) {
         throw e;
       } catch (Exception e) {
@@ -237,4 +287,16 @@ public class Frontend implements FrontendInterface {
 
   }
 
+  /**
+   * Displays one page of pageSize songs with the current year range, starting at the
+   * position described by token, and remembers the token for the page after it.
+   *
+   * @param token continuation token from the backend, or null for the first page
+   */
+  private void showPage(String token) {
+    BackendInterface.Page page = backend.getPage(yearMin, yearMax, token, pageSize);
+    pageToken = page.nextToken;
+    System.out.println(page.titles);
+  }
+
 }
@@ -41,6 +41,8 @@ public interface FrontendInterface {
      * loudness MAX 
      * show MAX_COUNT
      * show most danceable
+     * show next
+     * show top COUNT by ATTRIBUTE
      * help
      * quit
      */
@@ -67,6 +69,11 @@ public interface FrontendInterface {
      *           to the first MAX_COUNT in the list returned from backend
      *           most danceable: argument displays results returned from the
      *           backend's fiveMost method
+     *     show next: displays the next MAX_COUNT songs after the last page
+     *           displayed by show, resuming from the backend's continuation
+     *           token instead of starting over
+     *     show top: displays the COUNT songs with the highest value of
+     *           ATTRIBUTE, as returned from the backend's topSongs method
      *     help: displays command instructions
      *     quit: ends this program (handled by runCommandLoop method above)
      *           (do NOT use System.exit(), as this will interfere with tests)
@@ -35,6 +35,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         """), "ERROR: Output does not contain command instructions");
@@ -56,6 +58,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         
@@ -71,6 +75,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         
@@ -111,6 +117,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         """), "ERROR: Output does not contain command instructions");
@@ -136,6 +144,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         
@@ -180,6 +190,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         """), "ERROR: Output does not contain command instructions");
@@ -201,6 +213,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         
@@ -243,6 +257,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         """), "ERROR: Output does not contain command instructions");
@@ -270,6 +286,8 @@ public class FrontendTests {
         loudness <MAX> (update the max loudness threshold)
         show <MAX_COUNT> (display specified number of songs w/ current thresholds)
         show most danceable (display most danceable songs w/ current thresholds)
+        show next (display the next page of songs after the last show <MAX_COUNT>)
+        show top <COUNT> by <ATTRIBUTE> (display songs with the highest bpm, energy, danceability, loudness or liveness w/ current thresholds)
         help (display valid commands)
         quit (end program)
         
@@ -287,4 +305,64 @@ public class FrontendTests {
     in.close();
   }
 
+  /**
+   * Tests the show top command
+   */
+  @Test
+  public void frontendTest5() {
+    // create UI tester with input
+    TextUITester tester = new TextUITester("show top 2 by  bpm  \nshow top x by bpm\n" +
+                                           "show top -1 by energy\nshow top 2 bpm\nquit", true);
+    Scanner in = new Scanner(System.in);
+    Frontend frontend = new Frontend(in, new Backend_Placeholder(new Tree_Placeholder()));
+
+    // run method to be tested
+    frontend.runCommandLoop();
+
+    // actual result output
+    String actual = tester.checkOutput();
+
+    // test results contain some of the expected phrases
+    assertTrue(actual.contains("show top <COUNT> by <ATTRIBUTE>"),
+        "ERROR: Output does not contain command instructions");
+    assertTrue(actual.contains("[A L I E N S, BO$$]"),
+        "ERROR: Output does not contain correct song list");
+    assertTrue(actual.contains("ERROR: <COUNT> argument is not an integer"),
+        "ERROR: Output does not contain correct error message");
+    assertTrue(actual.contains("ERROR: <COUNT> is negative"),
+        "ERROR: Output does not contain correct error message");
+    assertTrue(actual.contains("ERROR: Use show top <COUNT> by <ATTRIBUTE>"),
+        "ERROR: Output does not contain correct error message");
+
+    in.close();
+  }
+
+  /**
+   * Tests that changing the loudness threshold, or showing 0 songs, ends paging with show next
+   */
+  @Test
+  public void frontendTest6() {
+    // create UI tester with input
+    TextUITester tester = new TextUITester("year -1 to 2\nshow 2\nloudness -5\nshow next\n" +
+                                           "show 0\nshow next\nquit", true);
+    Scanner in = new Scanner(System.in);
+    Frontend frontend = new Frontend(in, new Backend_Placeholder(new Tree_Placeholder()));
+
+    // run method to be tested
+    frontend.runCommandLoop();
+
+    // actual result output
+    String actual = tester.checkOutput();
+
+    // test results contain some of the expected phrases
+    assertTrue(actual.contains("[A L I E N S, BO$$]"),
+        "ERROR: Output does not contain correct song list");
+    assertTrue(actual.contains("ERROR: Use show <MAX_COUNT> before show next"),
+        "ERROR: Output does not contain correct error message");
+    assertTrue(actual.contains("ERROR: show 0 has no next page"),
+        "ERROR: Output does not contain correct error message");
+
+    in.close();
+  }
+
 }
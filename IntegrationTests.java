@@ -93,8 +93,8 @@ public class IntegrationTests {
      */
     @Test
     public void combinedFilterIntegrationTest() {
-        frontend.executeSingleCommand("year 2015 to 2019");  // Shorter range for precise filtering
-        frontend.executeSingleCommand("loudness -5");
+        frontend.executeSingleCommand("year 2015 to 2015");  // Shorter range for precise filtering
+        frontend.executeSingleCommand("loudness -4");
         frontend.executeSingleCommand("show most danceable");
 
         List<String> result = backend.fiveMost();
@@ -105,4 +105,42 @@ public class IntegrationTests {
                    "Unexpected song exceeding loudness threshold should be excluded.");
     }
 
+    /**
+     * Integration Test 5 - Tests `show next` after `show` with a page size.
+     * Ensures consecutive pages continue where the previous page stopped, cover
+     * every song in the range once, and that paging past the end is reported.
+     */
+    @Test
+    public void showNextIntegrationTest() {
+        backend.filterSongs(null);
+        List<String> all = backend.getPage(2010, 2012, null, Integer.MAX_VALUE).titles;
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(outputStream));
+        frontend.executeSingleCommand("year 2010 to 2012");
+        frontend.executeSingleCommand("show 40");
+        int pages = 1;
+        try {
+            while (true) {
+                frontend.executeSingleCommand("show next");
+                pages++;
+            }
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("ERROR: No more songs to show"),
+                       "Expected error message after the last page.");
+        } finally {
+            System.setOut(original);
+        }
+
+        // expected pages are printed the same way, so titles are encoded identically
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PrintStream expectedOut = new PrintStream(expected);
+        for (int from = 0; from < all.size(); from += 40) {
+            expectedOut.println(all.subList(from, Math.min(all.size(), from + 40)));
+        }
+        assertEquals((all.size() + 39) / 40, pages, "Expected one page per 40 songs.");
+        assertEquals(expected.toString(), outputStream.toString());
+    }
+
 }
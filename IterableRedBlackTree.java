@@ -1,6 +1,14 @@
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Stack;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -11,8 +19,119 @@ import org.junit.jupiter.api.Test;
 public class IterableRedBlackTree<T extends Comparable<T>>
                 extends RedBlackTree<T> implements IterableSortedCollection<T> {
 
-    private Comparable<T> min = null; // Stores the minimum bound for iteration
-    private Comparable<T> max = null; // Stores the maximum bound for iteration
+    protected Comparable<T> min = null; // Stores the minimum bound for iteration
+    protected Comparable<T> max = null; // Stores the maximum bound for iteration
+    private boolean bucketDuplicates = false; // Whether equal values share one node
+    private ToIntFunction<? super T> priority = null; // Priority tracked in each subtree, or null
+
+    /**
+     * Chooses whether values that compare equal are kept together in a single node,
+     * in the order they were inserted, instead of each getting a node of its own. With
+     * many duplicates this keeps the height of the tree proportional to the number of
+     * distinct values, and iterators return each bucket of equal values in one run.
+     * @param bucketDuplicates true to keep equal values in one node
+     * @throws IllegalStateException when the tree is not empty
+     */
+    public void setBucketDuplicates(boolean bucketDuplicates) {
+        if (root != null) {
+            throw new IllegalStateException("Cannot change how duplicates are stored in a non-empty tree");
+        }
+        this.bucketDuplicates = bucketDuplicates;
+    }
+
+    /**
+     * @return true if values that compare equal are kept together in a single node
+     */
+    public boolean isBucketDuplicates() {
+        return this.bucketDuplicates;
+    }
+
+    /**
+     * Chooses a priority for the values of this tree, such as the danceability of a song.
+     * Every node then also stores the largest priority in its subtree, which lets topK
+     * skip every subtree that cannot hold one of the values it is looking for. Keeping
+     * the largest priority up to date costs O(1) per node whose subtree changes, except
+     * in nodes holding a bucket of duplicates, where all values of the bucket are read.
+     * @param priority the priority of each value, or null to stop tracking priorities
+     * @throws IllegalStateException when the tree is not empty
+     */
+    public void setPriority(ToIntFunction<? super T> priority) {
+        if (root != null) {
+            throw new IllegalStateException("Cannot change the priority of a non-empty tree");
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * @return the priority tracked for the values of this tree, or null when there is none
+     */
+    public ToIntFunction<? super T> getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Inserts a new data value into the tree. When duplicates are bucketed and the tree
+     * already holds a value equal to data, data is appended to that value's node and
+     * the tree's shape does not change.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public void insert(T data) {
+        if (data != null && bucketDuplicates) {
+            BinaryTreeNode<T> current = root;
+            while (current != null) {
+                int comparison = data.compareTo(current.getData());
+                if (comparison == 0) {
+                    RBTNode<T> bucket = (RBTNode<T>) current;
+                    if (bucket.duplicates == null) bucket.duplicates = new ArrayList<>(2);
+                    bucket.duplicates.add(data);
+                    modifications++;
+                    int dataPriority = priority == null ? Integer.MIN_VALUE : priority.applyAsInt(data);
+                    for (BinaryTreeNode<T> node = bucket; node != null; node = node.parent()) {
+                        node.size++;
+                        node.maxPriority = Math.max(node.maxPriority, dataPriority);
+                    }
+                    return;
+                }
+                current = comparison < 0 ? current.childLeft() : current.childRight();
+            }
+        }
+        boolean wasEmpty = root == null;
+        super.insert(data);
+        if (wasEmpty) updateNode(root);
+    }
+
+    /**
+     * Links newNode into the tree below subtree, and then updates the largest priority
+     * of every node on its path before any rotation reads them.
+     */
+    @Override
+    protected void insertHelper(BinaryTreeNode<T> newNode, BinaryTreeNode<T> subtree) {
+        super.insertHelper(newNode, subtree);
+        if (priority == null) return;
+        for (BinaryTreeNode<T> node = newNode; node != null; node = node.parent()) {
+            updateNode(node);
+        }
+    }
+
+    /**
+     * Recomputes the subtree size, and the largest priority when the tree tracks one.
+     */
+    @Override
+    protected void updateNode(BinaryTreeNode<T> node) {
+        super.updateNode(node);
+        if (priority == null) return;
+        int largest = Math.max(maxPriorityOf(node.childLeft()), maxPriorityOf(node.childRight()));
+        for (int i = 0; i < node.valueCount(); i++) {
+            largest = Math.max(largest, priority.applyAsInt(node.getValue(i)));
+        }
+        node.maxPriority = largest;
+    }
+
+    private static int maxPriorityOf(BinaryTreeNode<?> node) {
+        return node == null ? Integer.MIN_VALUE : node.maxPriority;
+    }
 
     /**
      * Allows setting the start (minimum) value of the iterator. When this method is called,
@@ -23,7 +142,6 @@ public class IterableRedBlackTree<T extends Comparable<T>>
     @Override
     public void setIteratorMin(Comparable<T> min) {
         this.min = min;
-        System.out.println("Iterator min set to: " + min);
     }
 
     /**
@@ -35,7 +153,6 @@ public class IterableRedBlackTree<T extends Comparable<T>>
     @Override
     public void setIteratorMax(Comparable<T> max) {
         this.max = max;
-        System.out.println("Iterator max set to: " + max);
     }
 
     /**
@@ -52,16 +169,432 @@ public class IterableRedBlackTree<T extends Comparable<T>>
         return new RBTIterator<>((BinaryTreeNode<T>) root, min, max);
     }
 
+    /**
+     * Returns an iterator over the values between min and max, including min and max
+     * themselves. Unlike iterator(), the bounds belong to the returned iterator alone,
+     * so calls from different threads do not affect each other.
+     * @param min the minimum value the iterator returns, or null for no minimum
+     * @param max the maximum value the iterator returns, or null for no maximum
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new RBTIterator<>(root, min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max, where each bound is
+     * only returned itself when it is marked as inclusive. The bounds belong to the
+     * returned iterator alone, as in iterator(min, max).
+     * @param min the minimum value of the range, or null for no minimum
+     * @param minInclusive whether values equal to min are returned
+     * @param max the maximum value of the range, or null for no maximum
+     * @param maxInclusive whether values equal to max are returned
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new RBTIterator<>(root, min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * Returns an iterator over the values within the bounds set by setIteratorMin and
+     * setIteratorMax, in descending order. It moves from each node to its in-order
+     * predecessor, so it returns its first value after one descent from the root and
+     * never buffers the values it has not returned yet.
+     */
+    public Iterator<T> descendingIterator() {
+        return new RBTDescendingIterator<>(root, min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over the values between min and max in descending order,
+     * starting at max. Each bound is only returned itself when it is marked as inclusive,
+     * and the bounds belong to the returned iterator alone, as in iterator(min, max).
+     * @param min the minimum value of the range, or null for no minimum
+     * @param minInclusive whether values equal to min are returned
+     * @param max the maximum value of the range, or null for no maximum
+     * @param maxInclusive whether values equal to max are returned
+     */
+    public Iterator<T> descendingIterator(Comparable<T> min, boolean minInclusive,
+                                          Comparable<T> max, boolean maxInclusive) {
+        return new RBTDescendingIterator<>(root, min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * Returns a cursor over the values between min and max, where each bound is only
+     * returned itself when it is marked as inclusive. A cursor is an iterator that can
+     * report its position as the last value it returned and the number of returned
+     * values equal to it, so that iteration can later continue from a new cursor.
+     * @param min the minimum value of the range, or null for no minimum
+     * @param minInclusive whether values equal to min are returned
+     * @param max the maximum value of the range, or null for no maximum
+     * @param maxInclusive whether values equal to max are returned
+     */
+    public Cursor cursor(Comparable<T> min, boolean minInclusive, Comparable<T> max, boolean maxInclusive) {
+        int index = min == null ? 0 : countBelow(min, !minInclusive);
+        return new Cursor(index, null, 0, max, maxInclusive);
+    }
+
+    /**
+     * Returns a cursor that continues where an earlier cursor stopped, given the values
+     * that cursor reported through last() and ties(). The new cursor finds its position
+     * from the subtree sizes, so this runs in O(log n) however far into the tree the
+     * earlier cursor had moved. Values inserted or removed before that position since
+     * the earlier cursor stopped are not taken into account.
+     * @param last the last value returned by the earlier cursor
+     * @param ties the number of values equal to last returned by the earlier cursors, or 0
+     * to start before the first value equal to last
+     * @param max the maximum value of the range, or null for no maximum
+     * @param maxInclusive whether values equal to max are returned
+     * @throws NullPointerException when last is null
+     * @throws IllegalArgumentException when ties is negative
+     */
+    public Cursor resume(T last, int ties, Comparable<T> max, boolean maxInclusive) {
+        if (last == null) throw new NullPointerException("Cannot resume after a null value");
+        if (ties < 0) throw new IllegalArgumentException("ties must not be negative: " + ties);
+        return new Cursor(countBelow(last, false) + ties, last, ties, max, maxInclusive);
+    }
+
+    /**
+     * Returns a spliterator over the values within the bounds set by setIteratorMin and
+     * setIteratorMax, in ascending order. It splits by position in the sorted order,
+     * using the subtree sizes, so parallel streams divide the range into equal parts.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return spliterator(min, true, max, true);
+    }
+
+    /**
+     * Returns a spliterator over the values between min and max, where each bound is
+     * only returned itself when it is marked as inclusive. The spliterator is SIZED:
+     * the number of values in the range is known before the first value is visited.
+     * The tree must not be changed while the spliterator is in use.
+     * @param min the minimum value of the range, or null for no minimum
+     * @param minInclusive whether values equal to min are returned
+     * @param max the maximum value of the range, or null for no maximum
+     * @param maxInclusive whether values equal to max are returned
+     */
+    public Spliterator<T> spliterator(Comparable<T> min, boolean minInclusive,
+                                      Comparable<T> max, boolean maxInclusive) {
+        int from = min == null ? 0 : countBelow(min, !minInclusive);
+        int to = max == null ? size() : countBelow(max, maxInclusive);
+        return new RBTSpliterator<>(root, from, Math.max(from, to));
+    }
+
+    /**
+     * @return a sequential stream over the values within the bounds set by
+     * setIteratorMin and setIteratorMax
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream over the values within the bounds set by
+     * setIteratorMin and setIteratorMax
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Replaces the contents of this tree with the values in sorted, building a
+     * balanced red-black tree directly in O(n) instead of inserting the values
+     * one at a time. Every node is black except for the nodes on the deepest
+     * level of an incomplete tree, which are red so that all paths keep the same
+     * black height. Values that compare equal keep their order from sorted, and
+     * share one node when duplicates are bucketed.
+     * @param sorted the values to store, in ascending order
+     * @throws NullPointerException when sorted or any of its values is null
+     * @throws IllegalArgumentException when sorted is not in ascending order
+     */
+    public void buildFrom(List<? extends T> sorted) {
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i) == null) {
+                throw new NullPointerException("Cannot insert null into RedBlackTree");
+            }
+            if (i > 0 && sorted.get(i - 1).compareTo(sorted.get(i)) > 0) {
+                throw new IllegalArgumentException("Values must be in ascending order, found "
+                    + sorted.get(i - 1) + " before " + sorted.get(i));
+            }
+        }
+        clearNodes();
+        root = buildTree(sorted);
+    }
+
+    /**
+     * Builds a balanced red-black tree from values in ascending order, grouping equal
+     * values into one node when this tree keeps duplicates together.
+     * @param sorted the values to build from, in ascending order
+     * @return the root of the new tree, or null when sorted is empty
+     */
+    private RBTNode<T> buildTree(List<? extends T> sorted) {
+        if (sorted.isEmpty()) return null;
+
+        // index in sorted of the first value of each node, followed by sorted.size()
+        int[] starts;
+        if (bucketDuplicates) {
+            List<Integer> groups = new ArrayList<>();
+            for (int i = 0; i < sorted.size(); i++) {
+                if (i == 0 || sorted.get(i - 1).compareTo(sorted.get(i)) != 0) groups.add(i);
+            }
+            groups.add(sorted.size());
+            starts = groups.stream().mapToInt(Integer::intValue).toArray();
+        } else {
+            starts = null;
+        }
+
+        // the depth of the deepest level, which is only partially filled unless
+        // the number of nodes is one less than a power of two
+        int n = starts == null ? sorted.size() : starts.length - 1;
+        int deepest = 31 - Integer.numberOfLeadingZeros(n);
+        int redLevel = (n + 1 == Integer.highestOneBit(n + 1)) ? -1 : deepest;
+        return buildHelper(sorted, starts, 0, n - 1, 0, redLevel);
+    }
+
+    /**
+     * Helper method for buildFrom that builds a subtree from the nodes between
+     * index lo and hi (inclusive), rooted at their middle node.
+     * @param sorted the values to build from
+     * @param starts the index of the first value of each node, or null when each
+     *     value gets a node of its own
+     * @param lo the index of the first node in this subtree
+     * @param hi the index of the last node in this subtree
+     * @param depth the depth of the subtree's root within the whole tree
+     * @param redLevel the depth whose nodes are coloured red, or -1 for none
+     * @return the root of the new subtree, or null when lo > hi
+     */
+    private RBTNode<T> buildHelper(List<? extends T> sorted, int[] starts, int lo, int hi,
+                                   int depth, int redLevel) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        RBTNode<T> node;
+        if (starts == null) {
+            node = newNode(sorted.get(mid));
+        } else {
+            node = newNode(sorted.get(starts[mid]));
+            if (starts[mid + 1] - starts[mid] > 1) {
+                node.duplicates = new ArrayList<>(sorted.subList(starts[mid] + 1, starts[mid + 1]));
+            }
+        }
+        node.isRed = depth == redLevel;
+        RBTNode<T> left = buildHelper(sorted, starts, lo, mid - 1, depth + 1, redLevel);
+        RBTNode<T> right = buildHelper(sorted, starts, mid + 1, hi, depth + 1, redLevel);
+        node.setChildLeft(left);
+        node.setChildRight(right);
+        if (left != null) left.setParent(node);
+        if (right != null) right.setParent(node);
+        updateNode(node);
+        return node;
+    }
+
+    /**
+     * Before a union, rebuilds the nodes of other when they store duplicates
+     * differently from this tree, so that the union keeps this tree's layout.
+     */
+    @Override
+    protected void applySetOperation(SetOperation operation, RBTNode<T> other) {
+        if (operation == SetOperation.UNION && other != null) {
+            List<T> values = new ArrayList<>(other.size);
+            boolean matches = true;
+            BinaryTreeNode<T> node = other;
+            while (node.childLeft() != null) node = node.childLeft();
+            for (BinaryTreeNode<T> previous = null; node != null; previous = node, node = successor(node)) {
+                if (bucketDuplicates ? previous != null && previous.getData().compareTo(node.getData()) == 0
+                                     : node.valueCount() > 1) {
+                    matches = false;
+                }
+                for (int i = 0; i < node.valueCount(); i++) values.add(node.getValue(i));
+            }
+            if (!matches) other = buildTree(values);
+        }
+        super.applySetOperation(operation, other);
+    }
+
+    /**
+     * Moves the values of node into the single node holding equal values, when
+     * duplicates are bucketed.
+     */
+    @Override
+    protected boolean mergeValues(RBTNode<T> equal, RBTNode<T> node) {
+        if (!bucketDuplicates) return false;
+        if (equal.duplicates == null) equal.duplicates = new ArrayList<>(node.valueCount());
+        for (int i = 0; i < node.valueCount(); i++) equal.duplicates.add(node.getValue(i));
+        updateNode(equal);
+        return true;
+    }
+
+    /**
+     * Returns the number of values in this tree that are strictly smaller than key.
+     * Uses the subtree sizes stored in each node, so this runs in O(log n).
+     * @param key the value to compare against
+     * @return the number of values smaller than key
+     * @throws NullPointerException when key is null
+     */
+    public int rank(Comparable<T> key) {
+        if (key == null) throw new NullPointerException("Cannot rank null key");
+        return countBelow(key, false);
+    }
+
+    /**
+     * Returns the value at position index of the sorted order of this tree, where
+     * index 0 is the smallest value. Runs in O(log n).
+     * @param index the position of the value to return
+     * @return the value at that position
+     * @throws IndexOutOfBoundsException when index is negative or not less than size()
+     */
+    public T select(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        BinaryTreeNode<T> current = root;
+        while (true) {
+            int leftSize = sizeOf(current.childLeft());
+            if (index < leftSize) {
+                current = current.childLeft();
+            } else if (index < leftSize + current.valueCount()) {
+                return current.getValue(index - leftSize);
+            } else {
+                index -= leftSize + current.valueCount();
+                current = current.childRight();
+            }
+        }
+    }
+
+    /**
+     * Counts the values in this tree between min and max, including min and max
+     * themselves. Runs in O(log n).
+     * @param min the smallest value to count, or null for no minimum
+     * @param max the largest value to count, or null for no maximum
+     * @return the number of values within the range
+     */
+    public int countInRange(Comparable<T> min, Comparable<T> max) {
+        int below = min == null ? 0 : countBelow(min, false);
+        int upTo = max == null ? size() : countBelow(max, true);
+        return Math.max(0, upTo - below);
+    }
+
+    /**
+     * Returns the k values between min and max with the highest priorities, highest
+     * first, among the values accepted by filter. Values with equal priorities are
+     * returned in ascending order. The search is best-first: it keeps a queue of values
+     * and of subtrees, ordered by priority, where a subtree's priority is the largest
+     * priority within it. It stops as soon as k values leave the queue, so subtrees
+     * whose largest priority is below the k-th result are never visited.
+     * @param k the number of values to return
+     * @param min the minimum value to consider, or null for no minimum
+     * @param max the maximum value to consider, or null for no maximum
+     * @param filter values that are skipped unless it returns true, or null to accept all
+     * @return up to k values, from the highest priority to the lowest
+     * @throws IllegalStateException when no priority was set with setPriority
+     * @throws IllegalArgumentException when k is negative
+     */
+    public List<T> topK(int k, Comparable<T> min, Comparable<T> max, Predicate<? super T> filter) {
+        if (priority == null) throw new IllegalStateException("topK needs a priority set with setPriority");
+        if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        List<T> result = new ArrayList<>(Math.min(k, 16));
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<>();
+        if (root != null && k > 0) queue.add(new Candidate<>(root, null, root.maxPriority, 0));
+        while (result.size() < k && !queue.isEmpty()) {
+            Candidate<T> candidate = queue.poll();
+            if (candidate.node == null) {
+                result.add(candidate.value);
+                continue;
+            }
+            BinaryTreeNode<T> node = candidate.node;
+            int position = candidate.position + sizeOf(node.childLeft());
+            boolean aboveMin = min == null || min.compareTo(node.getData()) <= 0;
+            boolean belowMax = max == null || max.compareTo(node.getData()) >= 0;
+            if (aboveMin && belowMax && node.valueCount() == 1) {
+                T value = node.getData();
+                if (filter == null || filter.test(value)) {
+                    queue.add(new Candidate<>(null, value, priority.applyAsInt(value), position));
+                }
+            } else if (aboveMin && belowMax) {
+                // only the k best values of a bucket can be among the k best overall
+                PriorityQueue<Candidate<T>> best = new PriorityQueue<>(java.util.Collections.reverseOrder());
+                for (int i = 0; i < node.valueCount(); i++) {
+                    T value = node.getValue(i);
+                    if (filter == null || filter.test(value)) {
+                        best.add(new Candidate<>(null, value, priority.applyAsInt(value), position + i));
+                        if (best.size() > k - result.size()) best.poll();
+                    }
+                }
+                queue.addAll(best);
+            }
+            // values in the left subtree are at most node's value, and in the right at least
+            if (aboveMin && node.childLeft() != null) {
+                queue.add(new Candidate<>(node.childLeft(), null, node.childLeft().maxPriority, candidate.position));
+            }
+            if (belowMax && node.childRight() != null) {
+                queue.add(new Candidate<>(node.childRight(), null, node.childRight().maxPriority,
+                                          position + node.valueCount()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Descends from root to the node holding the value at position index of the sorted
+     * order of its tree, and stores the position of that value within the node in offset[0].
+     * @param root the root of the tree to search
+     * @param index the position of the value to find
+     * @param offset array whose first element receives the position within the node
+     * @return the node holding the value, or null when index is not less than the size of the tree
+     */
+    protected static <R> BinaryTreeNode<R> nodeAt(BinaryTreeNode<R> root, int index, int[] offset) {
+        BinaryTreeNode<R> current = root;
+        while (current != null) {
+            int leftSize = sizeOf(current.childLeft());
+            if (index < leftSize) {
+                current = current.childLeft();
+            } else if (index < leftSize + current.valueCount()) {
+                offset[0] = index - leftSize;
+                return current;
+            } else {
+                index -= leftSize + current.valueCount();
+                current = current.childRight();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method that counts the values smaller than key, or smaller than or
+     * equal to key when inclusive is true, by descending a single path of the tree.
+     * @param key the value to compare against
+     * @param inclusive whether values equal to key are counted
+     * @return the number of values found before key
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        int count = 0;
+        BinaryTreeNode<T> current = root;
+        while (current != null) {
+            int comparison = key.compareTo(current.getData());
+            if (comparison > 0 || (inclusive && comparison == 0)) {
+                // this node and its whole left subtree come before key
+                count += sizeOf(current.childLeft()) + current.valueCount();
+                current = current.childRight();
+            } else {
+                current = current.childLeft();
+            }
+        }
+        return count;
+    }
+
     /**
      * Nested class for Iterator objects created for this tree and returned by the iterator method.
      * This iterator follows an in-order traversal of the tree and returns the values in sorted,
-     * ascending order.
+     * ascending order. It moves from each node to its in-order successor by following child and
+     * parent references, so it needs no extra memory and allocates nothing per step.
      */
     protected static class RBTIterator<R extends Comparable<R>> implements Iterator<R> {
 
-        private final Stack<BinaryTreeNode<R>> stack = new Stack<>(); // Stack for in-order traversal
-        private final Comparable<R> min; // Minimum bound for iteration
+        private BinaryTreeNode<R> next; // Next node to return, or null when iteration is done
+        private int offset = 0; // Position of the next value within the values of next
         private final Comparable<R> max; // Maximum bound for iteration
+        private final boolean maxInclusive; // Whether values equal to max are returned
 
         /**
          * Constructor for a new iterator if the tree with root as its root node, and
@@ -72,49 +605,53 @@ public class IterableRedBlackTree<T extends Comparable<T>>
          * @param max the maximum value that the iterator will return 
          */
         public RBTIterator(BinaryTreeNode<R> root, Comparable<R> min, Comparable<R> max) {
-            this.min = min;
-            this.max = max;
-            buildStackHelper(root); // Initialize the stack with valid nodes
+            this(root, min, true, max, true);
         }
 
         /**
-         * Helper method for initializing and updating the stack.
-         * This method both:
-         * - Finds the next data value stored in the tree (or subtree) that is 
-         *   between start (minimum) and stop (maximum) point (including start and stop points themselves), and
-         * - Builds up the stack of ancestor nodes that contain values between start (minimum) and stop (maximum) values 
-         *   (including start and stop values themselves) so that those nodes can be visited in the future.
-         * @param node the root node of the subtree to process
+         * Constructor for a new iterator that can exclude values equal to its bounds.
+         * @param root root node of the tree to traverse
+         * @param min the minimum bound of the iterator, or null if no start value
+         * @param minInclusive whether values equal to min are returned
+         * @param max the maximum bound of the iterator, or null if no stop value
+         * @param maxInclusive whether values equal to max are returned
          */
-        private void buildStackHelper(BinaryTreeNode<R> node) {
-          // Base case: stop recursion if node is null
-          if (node == null) {
-              return;
-          }
-
-          if (max != null && node.getData().compareTo((R) max) > 0) {
-              // If the current node's value exceeds max, recurse on left subtree
-              System.out.println("Ignoring node (exceeds max): " + node.getData());
-              buildStackHelper(node.childLeft());
-          } else if (min == null || node.getData().compareTo((R) min) >= 0) {
-              // If node is within range, push to stack and recurse on left subtree first
-              System.out.println("Adding node to stack: " + node.getData());
-              stack.push(node);
-              buildStackHelper(node.childLeft());
-          } else {
-              // If node is below min, recurse on right subtree
-              System.out.println("Ignoring node (below min): " + node.getData());
-              buildStackHelper(node.childRight());
-          }
-      }
+        public RBTIterator(BinaryTreeNode<R> root, Comparable<R> min, boolean minInclusive,
+                           Comparable<R> max, boolean maxInclusive) {
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            // descend to the first node whose value is at or above min (above when exclusive)
+            int lowest = minInclusive ? 0 : 1;
+            BinaryTreeNode<R> first = null;
+            while (root != null) {
+                if (min == null || root.getData().compareTo((R) min) >= lowest) {
+                    first = root;
+                    root = root.childLeft();
+                } else {
+                    root = root.childRight();
+                }
+            }
+            this.next = withinMax(first);
+        }
 
+        /**
+         * Returns node if it exists and does not exceed the maximum bound, or null otherwise.
+         */
+        private BinaryTreeNode<R> withinMax(BinaryTreeNode<R> node) {
+            if (node == null) return null;
+            if (max != null) {
+                int comparison = node.getData().compareTo((R) max);
+                if (comparison > 0 || (comparison == 0 && !maxInclusive)) return null;
+            }
+            return node;
+        }
 
         /**
          * Returns true if the iterator has another value to return, and false otherwise.
          */
         @Override
         public boolean hasNext() {
-            return !stack.isEmpty();
+            return next != null;
         }
 
         /**
@@ -126,18 +663,283 @@ public class IterableRedBlackTree<T extends Comparable<T>>
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
+            R nextValue = next.getValue(offset++);
+            if (offset == next.valueCount()) {
+                next = withinMax(successor(next));
+                offset = 0;
+            }
+            return nextValue;
+        }
+    }
+
+    /**
+     * Iterator over the values of this tree in ascending order that keeps track of its
+     * position as a value and a count, instead of as a node. Unlike a node, that position
+     * stays meaningful after the iterator is discarded and the tree is changed, and it can
+     * be passed to resume to continue the iteration.
+     */
+    public class Cursor implements Iterator<T> {
+
+        private BinaryTreeNode<T> next; // Next node to return from, or null when iteration is done
+        private int offset = 0; // Position of the next value within the values of next
+        private final Comparable<T> max; // Maximum bound for iteration
+        private final boolean maxInclusive; // Whether values equal to max are returned
+        private T last; // The last value returned, or the value resumed after
+        private int ties; // The number of returned values that compare equal to last
+
+        private Cursor(int index, T last, int ties, Comparable<T> max, boolean maxInclusive) {
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+            this.last = last;
+            this.ties = ties;
+            int[] position = new int[1];
+            this.next = withinMax(nodeAt(root, index, position));
+            this.offset = position[0];
+        }
 
-            // Get the next node in in-order traversal
-            BinaryTreeNode<R> nextNode = stack.pop();
-            R nextValue = nextNode.getData();
-            System.out.println("Returning next value: " + nextValue);
+        /**
+         * Creates a cursor for subclasses that keep track of their position themselves,
+         * and so override every public method.
+         */
+        protected Cursor() {
+            this.max = null;
+            this.maxInclusive = false;
+        }
+
+        /**
+         * Returns node if it exists and does not exceed the maximum bound, or null otherwise.
+         */
+        private BinaryTreeNode<T> withinMax(BinaryTreeNode<T> node) {
+            if (node == null || max == null) return node;
+            int comparison = max.compareTo(node.getData());
+            return comparison > 0 || (comparison == 0 && maxInclusive) ? node : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the next value of the cursor.
+         * @throws NoSuchElementException if the cursor has no more values to return
+         */
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = next.getValue(offset++);
+            if (offset == next.valueCount()) {
+                next = withinMax(successor(next));
+                offset = 0;
+            }
+            if (last != null && value.compareTo(last) == 0) {
+                ties++;
+            } else {
+                last = value;
+                ties = 1;
+            }
+            return value;
+        }
+
+        /**
+         * @return the last value returned by this cursor, or the value it resumed after,
+         * or null when neither exists
+         */
+        public T last() {
+            return last;
+        }
 
-            // Process right subtree of the popped node
-            buildStackHelper(nextNode.childRight());
+        /**
+         * @return the number of values equal to last() that were returned by this cursor
+         * and the cursors it resumed from
+         */
+        public int ties() {
+            return ties;
+        }
+    }
+
+    /**
+     * Entry of the queue used by topK: either a single value, or a subtree that has not
+     * been expanded yet. Entries leave the queue by descending priority, and entries with
+     * equal priorities by ascending position in the sorted order, where the position of a
+     * subtree is the position of its first value. A subtree therefore leaves the queue
+     * before any value with the same priority that comes after it in sorted order.
+     */
+    private static final class Candidate<R> implements Comparable<Candidate<R>> {
+        final BinaryTreeNode<R> node; // the subtree, or null for a single value
+        final R value; // the value, or null for a subtree
+        final int priority; // the priority of value, or the largest priority in the subtree
+        final int position; // position of value, or of the first value of the subtree
+
+        Candidate(BinaryTreeNode<R> node, R value, int priority, int position) {
+            this.node = node;
+            this.value = value;
+            this.priority = priority;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Candidate<R> other) {
+            if (priority != other.priority) return Integer.compare(other.priority, priority);
+            return Integer.compare(position, other.position);
+        }
+    }
+
+    /**
+     * Iterator that returns the values of a tree in descending order, the mirror image of
+     * RBTIterator: it starts at the last node within the maximum bound and moves to
+     * in-order predecessors until it passes the minimum bound. Values that share a node
+     * are returned from the last one inserted to the first.
+     */
+    protected static class RBTDescendingIterator<R extends Comparable<R>> implements Iterator<R> {
+
+        private BinaryTreeNode<R> next; // Next node to return from, or null when iteration is done
+        private int offset; // Position of the next value within the values of next
+        private final Comparable<R> min; // Minimum bound for iteration
+        private final boolean minInclusive; // Whether values equal to min are returned
+
+        /**
+         * Constructor for a new descending iterator over the tree with root as its root node.
+         * @param root root node of the tree to traverse
+         * @param min the minimum bound of the iterator, or null if no stop value
+         * @param minInclusive whether values equal to min are returned
+         * @param max the maximum bound of the iterator, or null if no start value
+         * @param maxInclusive whether values equal to max are returned
+         */
+        public RBTDescendingIterator(BinaryTreeNode<R> root, Comparable<R> min, boolean minInclusive,
+                                     Comparable<R> max, boolean maxInclusive) {
+            this.min = min;
+            this.minInclusive = minInclusive;
+            // descend to the last node whose value is at or below max (below when exclusive)
+            int lowest = maxInclusive ? 0 : 1;
+            BinaryTreeNode<R> last = null;
+            while (root != null) {
+                if (max == null || max.compareTo(root.getData()) >= lowest) {
+                    last = root;
+                    root = root.childRight();
+                } else {
+                    root = root.childLeft();
+                }
+            }
+            this.next = withinMin(last);
+        }
+
+        /**
+         * Returns node if it exists and is not below the minimum bound, or null otherwise,
+         * and points offset at the last value of node.
+         */
+        private BinaryTreeNode<R> withinMin(BinaryTreeNode<R> node) {
+            if (node == null) return null;
+            if (min != null) {
+                int comparison = min.compareTo(node.getData());
+                if (comparison > 0 || (comparison == 0 && !minInclusive)) return null;
+            }
+            offset = node.valueCount() - 1;
+            return node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the next value of the iterator.
+         * @throws NoSuchElementException if the iterator has no more values to return
+         */
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            R nextValue = next.getValue(offset--);
+            if (offset < 0) next = withinMin(predecessor(next));
             return nextValue;
         }
     }
 
+    /**
+     * Spliterator over the values at positions from (inclusive) to to (exclusive) of the
+     * sorted order of a tree. Splitting halves the range of positions, and each half only
+     * descends to its first node when it visits its first value, so a split costs O(1)
+     * and the parts handed to other threads always have equal sizes.
+     */
+    protected static class RBTSpliterator<R extends Comparable<R>> implements Spliterator<R> {
+
+        private final BinaryTreeNode<R> root; // root of the tree being traversed
+        private int from; // position of the next value to visit
+        private final int to; // position after the last value to visit
+        private BinaryTreeNode<R> next = null; // node holding position from, or null if not found yet
+        private int offset = 0; // position of the next value within the values of next
+
+        public RBTSpliterator(BinaryTreeNode<R> root, int from, int to) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            if (action == null) throw new NullPointerException();
+            if (from >= to) return false;
+            if (next == null) {
+                int[] position = new int[1];
+                next = nodeAt(root, from, position);
+                offset = position[0];
+            }
+            R value = next.getValue(offset++);
+            if (offset == next.valueCount()) {
+                next = successor(next);
+                offset = 0;
+            }
+            from++;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super R> action) {
+            while (tryAdvance(action));
+        }
+
+        /**
+         * Hands the first half of the remaining positions to a new spliterator and keeps
+         * the second half.
+         * @return the spliterator for the first half, or null when fewer than two values remain
+         */
+        @Override
+        public Spliterator<R> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle == from) return null;
+            RBTSpliterator<R> prefix = new RBTSpliterator<>(root, from, middle);
+            prefix.next = next;
+            prefix.offset = offset;
+            from = middle;
+            next = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | NONNULL | SIZED | SUBSIZED;
+        }
+
+        /**
+         * @return null, since the values are sorted in their natural order
+         */
+        @Override
+        public java.util.Comparator<? super R> getComparator() {
+            return null;
+        }
+    }
+
     /**
      * Tests iteration over the entire tree with no minimum or maximum constraints.
      * Ensures elements are returned in sorted order.
@@ -287,9 +1089,469 @@ public class IterableRedBlackTree<T extends Comparable<T>>
         assertEquals(20, iter.next());
         assertEquals(30, iter.next());
         assertEquals(40, iter.next());
-        
+
         // Ensure no more elements exist
         assertFalse(iter.hasNext());
     }
 
+    /**
+     * Tests that size, rank, select and countInRange agree with the sorted order
+     * of the tree, including duplicates and after rotations.
+     */
+    @Test
+    public void testOrderStatistics() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        int[] values = {50, 20, 80, 10, 30, 30, 70, 90, 60, 40};
+        for (int value : values) tree.insert(value);
+        int[] sorted = values.clone();
+        java.util.Arrays.sort(sorted);
+
+        assertEquals(sorted.length, tree.size());
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(sorted[i], tree.select(i));
+        }
+        assertEquals(0, tree.rank(10));
+        assertEquals(2, tree.rank(30));
+        assertEquals(4, tree.rank(31));
+        assertEquals(10, tree.rank(100));
+        assertEquals(5, tree.countInRange(30, 60));
+        assertEquals(4, tree.countInRange(null, 30));
+        assertEquals(0, tree.countInRange(61, 69));
+        assertEquals(10, tree.countInRange(null, null));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(10));
+    }
+
+    /**
+     * Tests that buildFrom produces a valid red-black tree holding the given
+     * values in order, for sizes with both complete and incomplete last levels.
+     */
+    @Test
+    public void testBuildFromSorted() {
+        for (int n = 0; n <= 70; n++) {
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < n; i++) values.add(i / 2); // include duplicates
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.insert(-1); // replaced by buildFrom
+            tree.buildFrom(values);
+
+            assertEquals(n, tree.size());
+            assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0, "Invalid tree for n=" + n);
+            List<Integer> iterated = new ArrayList<>();
+            for (Integer value : tree) iterated.add(value);
+            assertEquals(values, iterated);
+
+            // the built tree must still accept regular inserts
+            tree.insert(n / 4);
+            assertEquals(n + 1, tree.size());
+            assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0, "Invalid tree for n=" + n);
+        }
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        assertThrows(IllegalArgumentException.class, () -> tree.buildFrom(List.of(2, 1)));
+    }
+
+    /**
+     * Checks the red-black and subtree size invariants of the subtree rooted at node.
+     * @return the black height of the subtree, or -1 if any invariant is violated
+     */
+    private static <T> int blackHeight(RBTNode<T> node) {
+        if (node == null) return 0;
+        if (node.isRed() && node.parent() != null && node.parent().isRed()) return -1;
+        if (node.parent() == null && node.isRed()) return -1;
+        int left = blackHeight(node.childLeft());
+        int right = blackHeight(node.childRight());
+        if (left < 0 || left != right) return -1;
+        if (node.subtreeSize() != node.valueCount() + sizeOf(node.childLeft()) + sizeOf(node.childRight())) return -1;
+        return left + (node.isRed() ? 0 : 1);
+    }
+
+    /**
+     * Tests bounded iteration against a filtered copy of the sorted values, on a tree
+     * large enough to have several levels and with many duplicates.
+     */
+    @Test
+    public void testIterationMatchesSortedValues() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        List<Integer> values = new ArrayList<>();
+        java.util.Random random = new java.util.Random(4);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(100);
+            tree.insert(value);
+            values.add(value);
+        }
+        values.sort(null);
+        Integer[][] bounds = {{null, null}, {25, null}, {null, 60}, {40, 40}, {30, 70}, {70, 30}, {101, null}};
+        for (Integer[] bound : bounds) {
+            List<Integer> expected = new ArrayList<>();
+            for (int value : values) {
+                if ((bound[0] == null || value >= bound[0]) && (bound[1] == null || value <= bound[1])) {
+                    expected.add(value);
+                }
+            }
+            tree.setIteratorMin(bound[0]);
+            tree.setIteratorMax(bound[1]);
+            List<Integer> actual = new ArrayList<>();
+            for (Integer value : tree) actual.add(value);
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Tests that iterators with their own bounds ignore the bounds set on the tree,
+     * and that exclusive bounds skip values equal to them.
+     */
+    @Test
+    public void testPerIteratorBounds() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        for (int i = 1; i <= 9; i++) {
+            tree.insert(i);
+            tree.insert(i);
+        }
+        tree.setIteratorMin(8);
+        tree.setIteratorMax(8);
+
+        List<Integer> inclusive = new ArrayList<>();
+        tree.iterator(3, 4).forEachRemaining(inclusive::add);
+        assertEquals(List.of(3, 3, 4, 4), inclusive);
+
+        List<Integer> halfOpen = new ArrayList<>();
+        tree.iterator(3, true, 5, false).forEachRemaining(halfOpen::add);
+        assertEquals(List.of(3, 3, 4, 4), halfOpen);
+
+        List<Integer> open = new ArrayList<>();
+        tree.iterator(3, false, 5, false).forEachRemaining(open::add);
+        assertEquals(List.of(4, 4), open);
+
+        List<Integer> unbounded = new ArrayList<>();
+        tree.iterator(null, false, 2, true).forEachRemaining(unbounded::add);
+        assertEquals(List.of(1, 1, 2, 2), unbounded);
+
+        // the tree's own bounds are still used by iterator()
+        List<Integer> shared = new ArrayList<>();
+        tree.iterator().forEachRemaining(shared::add);
+        assertEquals(List.of(8, 8), shared);
+    }
+
+    /**
+     * Tests that bucketed duplicates keep one node per distinct value, keep equal values
+     * in insertion order, and work with order statistics, removal and bulk building.
+     */
+    @Test
+    public void testBucketDuplicates() {
+        // words are compared by their first letter only, so there are two distinct keys
+        String[] words = {"pear", "apple", "plum", "apricot", "peach", "avocado", "pineapple"};
+        IterableRedBlackTree<Word> letters = new IterableRedBlackTree<>();
+        letters.setBucketDuplicates(true);
+        for (String word : words) letters.insert(new Word(word));
+        assertEquals(7, letters.size());
+        assertEquals(2, countNodes(letters.root));
+
+        List<String> order = new ArrayList<>();
+        for (Word word : letters) order.add(word.text);
+        assertEquals(List.of("apple", "apricot", "avocado", "pear", "plum", "peach", "pineapple"), order);
+
+        assertEquals("plum", letters.select(4).text);
+        assertEquals(3, letters.rank(new Word("p")));
+        assertEquals(4, letters.countInRange(new Word("p"), new Word("p")));
+
+        List<String> bounded = new ArrayList<>();
+        letters.iterator(new Word("b"), null).forEachRemaining(word -> bounded.add(word.text));
+        assertEquals(List.of("pear", "plum", "peach", "pineapple"), bounded);
+
+        assertTrue(letters.remove(letters.select(5))); // removes "peach" itself
+        assertTrue(letters.remove(new Word("pxxx"))); // no exact match, removes the first p word
+        List<String> remaining = new ArrayList<>();
+        for (Word word : letters) remaining.add(word.text);
+        assertEquals(List.of("apple", "apricot", "avocado", "plum", "pineapple"), remaining);
+        assertEquals(3, letters.removeRange(new Word("a"), new Word("a")));
+        assertEquals(2, letters.size());
+        assertTrue(blackHeight((RBTNode<Word>) letters.root) >= 0);
+
+        IterableRedBlackTree<Word> built = new IterableRedBlackTree<>();
+        built.setBucketDuplicates(true);
+        List<Word> sorted = new ArrayList<>();
+        for (String word : words) sorted.add(new Word(word));
+        sorted.sort(null);
+        built.buildFrom(sorted);
+        assertEquals(2, countNodes(built.root));
+        assertEquals(7, built.size());
+        assertTrue(blackHeight((RBTNode<Word>) built.root) >= 0);
+        assertThrows(IllegalStateException.class, () -> built.setBucketDuplicates(false));
+    }
+
+    /**
+     * Tests that sequential and parallel streams return the values within their bounds
+     * in sorted order, and that splitting divides the range into parts of known size.
+     */
+    @Test
+    public void testSpliterator() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        List<Integer> expected = new ArrayList<>();
+        java.util.Random random = new java.util.Random(11);
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(1000);
+            tree.insert(value);
+            expected.add(value);
+        }
+        expected.sort(null);
+
+        assertEquals(expected, tree.stream().collect(java.util.stream.Collectors.toList()));
+        assertEquals(expected, tree.parallelStream().collect(java.util.stream.Collectors.toList()));
+        assertEquals(expected.stream().mapToLong(Integer::longValue).sum(),
+                     tree.parallelStream().mapToLong(Integer::longValue).sum());
+
+        tree.setIteratorMin(200);
+        tree.setIteratorMax(300);
+        List<Integer> bounded = expected.subList(expected.indexOf(200), expected.lastIndexOf(300) + 1);
+        assertEquals(bounded, tree.parallelStream().collect(java.util.stream.Collectors.toList()));
+
+        Spliterator<Integer> spliterator = tree.spliterator(200, false, 300, false);
+        long exclusive = expected.stream().filter(value -> value > 200 && value < 300).count();
+        assertEquals(exclusive, spliterator.getExactSizeIfKnown());
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        assertEquals(exclusive, prefix.estimateSize() + spliterator.estimateSize());
+        List<Integer> joined = new ArrayList<>();
+        prefix.forEachRemaining(joined::add);
+        spliterator.forEachRemaining(joined::add);
+        assertEquals(expected.subList(expected.lastIndexOf(200) + 1, expected.indexOf(300)), joined);
+
+        assertEquals(0, tree.spliterator(500, true, 400, true).estimateSize());
+    }
+
+    /**
+     * Tests that descending iterators return exactly the reverse of the matching
+     * ascending iterators, with and without bounds and with bucketed duplicates.
+     */
+    @Test
+    public void testDescendingIteration() {
+        for (boolean bucket : new boolean[] {false, true}) {
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.setBucketDuplicates(bucket);
+            assertFalse(tree.descendingIterator().hasNext());
+            java.util.Random random = new java.util.Random(12);
+            for (int i = 0; i < 3000; i++) tree.insert(random.nextInt(400));
+
+            int[][] bounds = {{-1, -1}, {100, 200}, {150, -1}, {-1, 50}, {300, 250}};
+            for (int[] bound : bounds) {
+                Integer min = bound[0] < 0 ? null : bound[0];
+                Integer max = bound[1] < 0 ? null : bound[1];
+                for (boolean inclusive : new boolean[] {false, true}) {
+                    List<Integer> ascending = new ArrayList<>();
+                    tree.iterator(min, inclusive, max, inclusive).forEachRemaining(ascending::add);
+                    java.util.Collections.reverse(ascending);
+                    List<Integer> descending = new ArrayList<>();
+                    tree.descendingIterator(min, inclusive, max, inclusive).forEachRemaining(descending::add);
+                    assertEquals(ascending, descending);
+                }
+            }
+
+            tree.setIteratorMax(10);
+            Iterator<Integer> newest = tree.descendingIterator();
+            assertTrue(newest.next() <= 10);
+        }
+    }
+
+    /**
+     * Tests that iterating page by page, resuming a new cursor after each page, returns
+     * the same values as one iterator, including runs of duplicates split across pages
+     * and values inserted into the tree between pages.
+     */
+    @Test
+    public void testCursorPages() {
+        for (boolean bucket : new boolean[] {false, true}) {
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.setBucketDuplicates(bucket);
+            java.util.Random random = new java.util.Random(14);
+            for (int i = 0; i < 1000; i++) tree.insert(random.nextInt(50));
+
+            List<Integer> expected = new ArrayList<>();
+            tree.iterator(10, false, 40, true).forEachRemaining(expected::add);
+
+            List<Integer> paged = new ArrayList<>();
+            IterableRedBlackTree<Integer>.Cursor cursor = tree.cursor(10, false, 40, true);
+            while (cursor.hasNext()) {
+                for (int i = 0; i < 7 && cursor.hasNext(); i++) paged.add(cursor.next());
+                cursor = tree.resume(cursor.last(), cursor.ties(), 40, true);
+            }
+            assertEquals(expected, paged);
+
+            // values inserted before the position of a cursor are skipped, values after it are not
+            cursor = tree.cursor(null, true, null, true);
+            for (int i = 0; i < 100; i++) cursor.next();
+            Integer last = cursor.last();
+            int ties = cursor.ties();
+            tree.insert(0);
+            tree.insert(49);
+            List<Integer> rest = new ArrayList<>();
+            tree.resume(last, ties, null, true).forEachRemaining(rest::add);
+            assertEquals(tree.size() - 101, rest.size());
+            assertEquals(Integer.valueOf(49), rest.get(rest.size() - 1));
+        }
+    }
+
+    /**
+     * Tests that topK returns the same values as sorting all values within the bounds
+     * by priority, and that the largest priority of every subtree stays correct through
+     * inserts, bulk builds and removals.
+     */
+    @Test
+    public void testTopK() {
+        ToIntFunction<Integer> lastDigits = value -> value % 37;
+        for (boolean bucket : new boolean[] {false, true}) {
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.setBucketDuplicates(bucket);
+            tree.setPriority(lastDigits);
+            java.util.Random random = new java.util.Random(15);
+            for (int i = 0; i < 3000; i++) tree.insert(random.nextInt(1000) * 10 + random.nextInt(3));
+            assertThrows(IllegalStateException.class, () -> tree.setPriority(null));
+            tree.remove(tree.select(100));
+            tree.removeRange(5000, 5200);
+            assertTrue(checkPriorities(tree.root, lastDigits), "Largest priorities are wrong");
+
+            List<Integer> sorted = new ArrayList<>();
+            tree.iterator(null, null).forEachRemaining(sorted::add);
+            IterableRedBlackTree<Integer> built = new IterableRedBlackTree<>();
+            built.setBucketDuplicates(bucket);
+            built.setPriority(lastDigits);
+            built.buildFrom(sorted);
+            assertTrue(checkPriorities(built.root, lastDigits), "Largest priorities are wrong after buildFrom");
+
+            int[][] bounds = {{-1, -1}, {1000, 2000}, {4990, 5300}, {9000, -1}};
+            for (int[] bound : bounds) {
+                Integer min = bound[0] < 0 ? null : bound[0];
+                Integer max = bound[1] < 0 ? null : bound[1];
+                for (int k : new int[] {0, 1, 5, 50}) {
+                    List<Integer> expected = new ArrayList<>();
+                    for (Integer value : sorted) {
+                        if ((min == null || value >= min) && (max == null || value <= max) && value % 2 == 0) {
+                            expected.add(value);
+                        }
+                    }
+                    // stable sort keeps equal priorities in ascending order
+                    expected.sort(java.util.Comparator.comparingInt(lastDigits).reversed());
+                    expected = expected.subList(0, Math.min(k, expected.size()));
+                    assertEquals(expected, tree.topK(k, min, max, value -> value % 2 == 0));
+                    assertEquals(expected, built.topK(k, min, max, value -> value % 2 == 0));
+                }
+            }
+        }
+        assertThrows(IllegalStateException.class, () -> new IterableRedBlackTree<Integer>().topK(1, null, null, null));
+    }
+
+    /**
+     * Tests that set operations keep one node per distinct value in a tree with bucketed
+     * duplicates, whichever way the other tree stores them, and keep largest priorities
+     * correct.
+     */
+    @Test
+    public void testSetOperationsWithBuckets() {
+        String[] words = {"pear", "apple", "plum", "apricot", "kiwi"};
+        String[] others = {"peach", "banana", "avocado", "pineapple", "apricot"};
+        for (boolean bucketOthers : new boolean[] {false, true}) {
+            IterableRedBlackTree<Word> letters = new IterableRedBlackTree<>();
+            letters.setBucketDuplicates(true);
+            for (String word : words) letters.insert(new Word(word));
+            IterableRedBlackTree<Word> other = new IterableRedBlackTree<>();
+            other.setBucketDuplicates(bucketOthers);
+            for (String word : others) other.insert(new Word(word));
+
+            letters.union(other);
+            List<String> order = new ArrayList<>();
+            for (Word word : letters) order.add(word.text);
+            // values of other follow the equal values already in a bucket, as with insert
+            List<String> expected = bucketOthers
+                ? List.of("apple", "apricot", "avocado", "apricot", "banana", "kiwi", "pear", "plum", "peach", "pineapple")
+                : List.of("apple", "apricot", "apricot", "avocado", "banana", "kiwi", "pear", "plum", "pineapple", "peach");
+            assertEquals(expected, order);
+            assertEquals(4, countNodes(letters.root));
+            assertEquals(10, letters.size());
+            assertTrue(blackHeight((RBTNode<Word>) letters.root) >= 0);
+
+            IterableRedBlackTree<Word> fruit = new IterableRedBlackTree<>();
+            fruit.insert(new Word("k"));
+            fruit.insert(new Word("p"));
+            letters.difference(fruit);
+            assertEquals(2, countNodes(letters.root));
+            assertEquals(5, letters.size());
+            fruit.clear();
+            fruit.insert(new Word("b"));
+            letters.intersection(fruit);
+            assertEquals(1, letters.size());
+            assertEquals("banana", letters.select(0).text);
+        }
+
+        ToIntFunction<Integer> lastDigits = value -> value % 37;
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        tree.setPriority(lastDigits);
+        IterableRedBlackTree<Integer> other = new IterableRedBlackTree<>();
+        java.util.Random random = new java.util.Random(16);
+        for (int i = 0; i < 20000; i++) tree.insert(random.nextInt(30000));
+        for (int i = 0; i < 10000; i++) other.insert(random.nextInt(30000));
+        tree.union(other);
+        assertEquals(30000, tree.size());
+        assertTrue(checkPriorities(tree.root, lastDigits), "Largest priorities are wrong after union");
+        tree.difference(other);
+        assertTrue(checkPriorities(tree.root, lastDigits), "Largest priorities are wrong after difference");
+        assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0);
+        for (Integer value : other) assertFalse(tree.contains(value));
+    }
+
+    /**
+     * Tests that rebuilding a pooled tree after clear reuses every node, and that the
+     * reused nodes carry no sizes, priorities or duplicates over from the old tree.
+     */
+    @Test
+    public void testNodePoolingReload() {
+        ToIntFunction<Integer> lastDigits = value -> value % 37;
+        for (boolean bucket : new boolean[] {false, true}) {
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.setNodePooling(true);
+            tree.setBucketDuplicates(bucket);
+            tree.setPriority(lastDigits);
+            List<Integer> sorted = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) sorted.add(i / 3);
+            tree.buildFrom(sorted);
+            long allocated = tree.getNodesAllocated();
+
+            List<Integer> reloaded = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) reloaded.add(1000 + i / 3 * 2);
+            tree.clear();
+            tree.buildFrom(reloaded);
+            assertEquals(allocated, tree.getNodesAllocated());
+            List<Integer> values = new ArrayList<>();
+            tree.forEach(values::add);
+            assertEquals(reloaded, values);
+            assertEquals(3000, tree.size());
+            assertTrue(checkPriorities(tree.root, lastDigits), "Largest priorities are wrong after reload");
+            assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0);
+        }
+    }
+
+    /**
+     * @return true if every node below node stores the largest priority of its subtree
+     */
+    private static <T> boolean checkPriorities(BinaryTreeNode<T> node, ToIntFunction<T> priority) {
+        if (node == null) return true;
+        int largest = Math.max(maxPriorityOf(node.childLeft()), maxPriorityOf(node.childRight()));
+        for (int i = 0; i < node.valueCount(); i++) largest = Math.max(largest, priority.applyAsInt(node.getValue(i)));
+        return node.maxPriority == largest
+            && checkPriorities(node.childLeft(), priority) && checkPriorities(node.childRight(), priority);
+    }
+
+    /**
+     * A word that compares by its first letter only, so that words sharing a first
+     * letter are duplicates of each other.
+     */
+    private static class Word implements Comparable<Word> {
+        final String text;
+        Word(String text) { this.text = text; }
+        public int compareTo(Word other) { return Character.compare(text.charAt(0), other.text.charAt(0)); }
+    }
+
+    /**
+     * @return the number of nodes in the subtree rooted at node
+     */
+    private static int countNodes(BinaryTreeNode<?> node) {
+        return node == null ? 0 : 1 + countNodes(node.childLeft()) + countNodes(node.childRight());
+    }
+
 }
\ No newline at end of file
@@ -1,3 +1,5 @@
+import java.util.Iterator;
+
 /**
  * This interface defines an ADT for data structures that support storing a 
  * collection of comparable values in their natural ordering (similar to the
@@ -8,6 +10,12 @@ public interface IterableSortedCollection<T extends Comparable<T>>
 
     public void setIteratorMin(Comparable<T> min); // null to clear min
     public void setIteratorMax(Comparable<T> max); // null to clear max
-    
+
+    // iterators that carry their own bounds instead of the ones set above, so
+    // that several threads can iterate over different ranges at the same time
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max); // inclusive, null for none
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive);
+
     
 }
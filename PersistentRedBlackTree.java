@@ -0,0 +1,319 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A persistent red-black tree whose nodes are never modified after they are created.
+ * An insert copies only the nodes on the path from the root down to the new leaf,
+ * rebalancing the copies on the way back up, and then publishes the new root with a
+ * single compare-and-set. Every iterator captures the root at the moment it is
+ * created, so readers always see a complete, unchanging snapshot of the tree and
+ * never need to take a lock, even while other threads are inserting.
+ */
+public class PersistentRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    /**
+     * Immutable tree node. Values that compare equal to a node's value are stored in
+     * its left subtree, as in RedBlackTree.
+     */
+    private static final class Node<T> {
+        final T data;
+        final Node<T> left;
+        final Node<T> right;
+        final boolean isRed;
+        final int size; // number of nodes in the subtree rooted at this node
+
+        Node(boolean isRed, Node<T> left, T data, Node<T> right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.isRed = isRed;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+    }
+
+    // the most recently published version of the tree
+    private final AtomicReference<Node<T>> root = new AtomicReference<>();
+
+    private volatile Comparable<T> min = null; // Stores the minimum bound for iteration
+    private volatile Comparable<T> max = null; // Stores the maximum bound for iteration
+
+    /**
+     * Inserts a new data value into the tree. When another thread publishes a new
+     * version first, the insert is retried against that version.
+     * @param data the new value being inserted
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) throw new NullPointerException("Cannot insert null into PersistentRedBlackTree");
+        while (true) {
+            Node<T> current = root.get();
+            Node<T> inserted = insertHelper(current, data);
+            // the root is always black
+            Node<T> updated = inserted.isRed
+                ? new Node<>(false, inserted.left, inserted.data, inserted.right) : inserted;
+            if (root.compareAndSet(current, updated)) return;
+        }
+    }
+
+    /**
+     * Returns a copy of the subtree rooted at node with data inserted, rebalanced on
+     * the way back up. Only nodes on the search path are copied.
+     * @param node the root of the subtree to insert into, may be null
+     * @param data the value to insert
+     * @return the root of the new version of the subtree
+     */
+    private Node<T> insertHelper(Node<T> node, T data) {
+        if (node == null) return new Node<>(true, null, data, null);
+        if (data.compareTo(node.data) <= 0) {
+            return balance(node.isRed, insertHelper(node.left, data), node.data, node.right);
+        }
+        return balance(node.isRed, node.left, node.data, insertHelper(node.right, data));
+    }
+
+    /**
+     * Creates a node from the given parts. When the node is black and one of its
+     * children is red with a red child of its own, the three nodes are rearranged into
+     * a red node with two black children, which removes the red-red violation.
+     */
+    private Node<T> balance(boolean isRed, Node<T> left, T data, Node<T> right) {
+        if (!isRed) {
+            if (isRed(left) && isRed(left.left)) {
+                return new Node<>(true, blacken(left.left), left.data,
+                                  new Node<>(false, left.right, data, right));
+            }
+            if (isRed(left) && isRed(left.right)) {
+                return new Node<>(true, new Node<>(false, left.left, left.data, left.right.left),
+                                  left.right.data, new Node<>(false, left.right.right, data, right));
+            }
+            if (isRed(right) && isRed(right.left)) {
+                return new Node<>(true, new Node<>(false, left, data, right.left.left),
+                                  right.left.data, new Node<>(false, right.left.right, right.data, right.right));
+            }
+            if (isRed(right) && isRed(right.right)) {
+                return new Node<>(true, new Node<>(false, left, data, right.left),
+                                  right.data, blacken(right.right));
+            }
+        }
+        return new Node<>(isRed, left, data, right);
+    }
+
+    private static <T> Node<T> blacken(Node<T> node) {
+        return new Node<>(false, node.left, node.data, node.right);
+    }
+
+    private static boolean isRed(Node<?> node) {
+        return node != null && node.isRed;
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Check whether data is stored in the current version of the tree.
+     * @param data the value to check for in the collection
+     * @return true if the collection contains data one or more times, and false otherwise
+     */
+    @Override
+    public boolean contains(Comparable<T> data) {
+        if (data == null) return false;
+        Node<T> current = root.get();
+        while (current != null) {
+            int comparison = data.compareTo(current.data);
+            if (comparison == 0) return true;
+            current = comparison < 0 ? current.left : current.right;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return sizeOf(root.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    /**
+     * Publishes an empty version of the tree. Iterators created before this call keep
+     * returning the values of their own snapshot.
+     */
+    @Override
+    public void clear() {
+        root.set(null);
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.max = max;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the tree, using the bounds set by
+     * setIteratorMin and setIteratorMax.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new SnapshotIterator<>(root.get(), min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the values between min and max,
+     * including both.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new SnapshotIterator<>(root.get(), min, true, max, true);
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the values between min and max, where
+     * each bound is only returned itself when it is marked as inclusive.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, boolean minInclusive,
+                                Comparable<T> max, boolean maxInclusive) {
+        return new SnapshotIterator<>(root.get(), min, minInclusive, max, maxInclusive);
+    }
+
+    /**
+     * In-order iterator over one version of the tree. Immutable nodes have no parent
+     * references, so the iterator keeps the ancestors it still has to visit on a
+     * stack, which holds at most one node per level of the tree.
+     */
+    private static class SnapshotIterator<R extends Comparable<R>> implements Iterator<R> {
+
+        private final ArrayDeque<Node<R>> stack = new ArrayDeque<>();
+        private final Comparable<R> min;
+        private final int highest; // largest allowed comparison of min with a value
+        private final Comparable<R> max;
+        private final int lowest; // smallest allowed comparison of max with a value
+
+        SnapshotIterator(Node<R> root, Comparable<R> min, boolean minInclusive,
+                         Comparable<R> max, boolean maxInclusive) {
+            this.min = min;
+            this.highest = minInclusive ? 0 : -1;
+            this.max = max;
+            this.lowest = maxInclusive ? 0 : 1;
+            pushLeft(root);
+        }
+
+        /**
+         * Pushes node and its left descendants that are at or above min onto the stack,
+         * skipping over subtrees that lie entirely below min.
+         */
+        private void pushLeft(Node<R> node) {
+            while (node != null) {
+                if (min == null || min.compareTo(node.data) <= highest) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && (max == null || max.compareTo(stack.peek().data) >= lowest);
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node<R> node = stack.pop();
+            pushLeft(node.right);
+            return node.data;
+        }
+    }
+
+    /**
+     * Tests that an iterator keeps returning the values of the version that existed
+     * when it was created, while later inserts and clear create new versions, and that
+     * exclusive bounds leave out the values equal to them.
+     */
+    @Test
+    public void testSnapshotIsolation() {
+        PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+        for (int i = 10; i >= 1; i--) tree.insert(i);
+        Iterator<Integer> snapshot = tree.iterator(3, 6);
+        assertEquals(3, snapshot.next());
+
+        tree.insert(4);
+        tree.insert(5);
+        tree.clear();
+        tree.insert(100);
+
+        List<Integer> rest = new ArrayList<>();
+        snapshot.forEachRemaining(rest::add);
+        assertEquals(List.of(4, 5, 6), rest);
+        assertEquals(1, tree.size());
+        assertTrue(tree.contains(100));
+        assertFalse(tree.contains(4));
+
+        tree.insert(50);
+        List<Integer> bounded = new ArrayList<>();
+        tree.iterator(50, false, 100, true).forEachRemaining(bounded::add);
+        tree.iterator(50, true, 100, false).forEachRemaining(bounded::add);
+        assertEquals(List.of(100, 50), bounded);
+    }
+
+    /**
+     * Tests that concurrent inserts from several threads are all kept, and that the
+     * final version is a valid red-black tree in sorted order.
+     */
+    @Test
+    public void testConcurrentInserts() throws InterruptedException {
+        PersistentRedBlackTree<Integer> tree = new PersistentRedBlackTree<>();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) tree.insert(i * writers.length + offset);
+            });
+            writers[t].start();
+        }
+        // readers iterate while the writers are running, and always see sorted values
+        for (int round = 0; round < 50; round++) {
+            Integer previous = null;
+            for (Integer value : tree) {
+                assertTrue(previous == null || previous < value);
+                previous = value;
+            }
+        }
+        for (Thread writer : writers) writer.join();
+
+        assertEquals(8000, tree.size());
+        assertTrue(blackHeight(tree.root.get()) > 0, "Tree violates Red-Black properties");
+        int expected = 0;
+        for (Integer value : tree) assertEquals(expected++, value);
+    }
+
+    /**
+     * @return the black height of the subtree rooted at node, or -1 if it violates the
+     * red-black properties or has a wrong subtree size
+     */
+    private static <T> int blackHeight(Node<T> node) {
+        if (node == null) return 0;
+        if (node.isRed && (isRed(node.left) || isRed(node.right))) return -1;
+        int leftHeight = blackHeight(node.left);
+        int rightHeight = blackHeight(node.right);
+        if (leftHeight < 0 || leftHeight != rightHeight) return -1;
+        if (node.size != 1 + sizeOf(node.left) + sizeOf(node.right)) return -1;
+        return leftHeight + (node.isRed ? 0 : 1);
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+
 /**
  * This class represents a node in a RedBlackTree and inherits from BinaryTreeNode.
  */
@@ -6,6 +8,10 @@ public class RBTNode<T> extends BinaryTreeNode<T> {
     // store whether this is a red or black node
     protected boolean isRed = true;
 
+    // further values that compare equal to data, in insertion order, for trees
+    // that keep duplicates in a single node; null when the node holds one value
+    protected ArrayList<T> duplicates = null;
+
     /**
      * Constructor that creates a new node with the value data.
      * Both parent and child references of the new node are initialized to null.
@@ -40,6 +46,25 @@ public class RBTNode<T> extends BinaryTreeNode<T> {
         return (RBTNode<T>)this.up;
     }
 
+    /**
+     * @return the number of values held by this node, including duplicates
+     */
+    @Override
+    public int valueCount() {
+        return this.duplicates == null ? 1 : 1 + this.duplicates.size();
+    }
+
+    /**
+     * @param index the position of the value within this node, starting at 0
+     * @return data for position 0, and otherwise the duplicate at that position
+     */
+    @Override
+    public T getValue(int index) {
+        if (index == 0) return this.data;
+        if (this.duplicates == null) throw new IndexOutOfBoundsException("Node holds a single value");
+        return this.duplicates.get(index - 1);
+    }
+
     /**
      * Returns a boolean that indicates if this is a red or black node.
      * @return true if the node is red, false if it is black
@@ -1,5 +1,8 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinTask;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -7,9 +10,92 @@ import org.junit.jupiter.api.TestInstance;
 
 public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
 
+    // roots of detached subtrees whose nodes new values reuse, or null without pooling
+    private ArrayDeque<RBTNode<T>> pool = null;
+    private long nodesAllocated = 0; // nodes created with new
+    private long nodesReused = 0; // nodes taken from the pool
+
     public RedBlackTree() {
         super();
     }
+
+    /**
+     * Chooses whether nodes that leave the tree are kept for reuse. With pooling,
+     * clear hands the whole tree to the pool in O(1), removals add their node, and
+     * later inserts and builds take nodes from the pool before they allocate new ones,
+     * so reloading a tree of the same size allocates no nodes at all. Pooled nodes
+     * keep their old values reachable until they are reused, and iterators must not
+     * be used after the nodes they are on have left the tree.
+     * @param pooling true to keep nodes for reuse, false to release the pool
+     */
+    public void setNodePooling(boolean pooling) {
+        if (!pooling) {
+            pool = null;
+        } else if (pool == null) {
+            pool = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @return the number of nodes this tree has created, for comparison with
+     * getNodesReused
+     */
+    public long getNodesAllocated() {
+        return nodesAllocated;
+    }
+
+    /**
+     * @return the number of nodes this tree has taken from its pool instead of
+     * creating them
+     */
+    public long getNodesReused() {
+        return nodesReused;
+    }
+
+    /**
+     * Returns a red node without links that holds data, reusing a pooled node when
+     * there is one. The children of a reused node go back into the pool, so that a
+     * cleared tree is taken apart one node at a time, as its nodes are needed.
+     * @param data the value of the node
+     * @return the new node
+     */
+    protected RBTNode<T> newNode(T data) {
+        RBTNode<T> node = pool == null ? null : pool.poll();
+        if (node == null) {
+            nodesAllocated++;
+            return new RBTNode<>(data);
+        }
+        nodesReused++;
+        if (node.childLeft() != null) pool.push(node.childLeft());
+        if (node.childRight() != null) pool.push(node.childRight());
+        node.setData(data);
+        node.setParent(null);
+        node.setChildLeft(null);
+        node.setChildRight(null);
+        node.isRed = true;
+        node.duplicates = null;
+        node.size = 1;
+        node.maxPriority = Integer.MIN_VALUE;
+        return node;
+    }
+
+    /**
+     * Removes all values from the tree. With pooling, the nodes are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        clearNodes();
+    }
+
+    /**
+     * Removes all values from the tree, like clear. Operations that replace the whole
+     * tree call this instead of clear, which subclasses may override to take a lock
+     * that the calling operation already holds.
+     */
+    protected void clearNodes() {
+        if (pool != null && root != null) pool.push((RBTNode<T>) root);
+        super.clear();
+    }
     
     @Override
     public void insert(T data) {
@@ -17,8 +103,8 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
             throw new NullPointerException("Cannot insert null into RedBlackTree");
         }
 
-        RBTNode<T> newNode = new RBTNode<>(data);
-        newNode.isRed = true;
+        RBTNode<T> newNode = newNode(data);
+        modifications++;
 
         if (root == null) {
             root = newNode;
@@ -31,56 +117,560 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
         ((RBTNode<T>) root).isRed = false;
     }
 
+    /**
+     * Restores the red-black properties after the red node was inserted. Each pass
+     * of the loop either fixes the violation with rotations, or recolors and moves
+     * the violation two levels up to the grandparent.
+     * @param node the newly inserted red node
+     */
     protected void ensureRedProperty(RBTNode<T> node) {
-        if (node.parent() == null) {
-            node.isRed = false;
+        while (true) {
+            if (node.parent() == null) {
+                node.isRed = false;
+                return;
+            }
+
+            if (!node.parent().isRed()) {
+                return;
+            }
+
+            RBTNode<T> parent = (RBTNode<T>) node.parent();
+            RBTNode<T> grandparent = (RBTNode<T>) parent.parent();
+
+            if (grandparent == null) {
+                return;
+            }
+
+            boolean isParentLeft = (grandparent.childLeft() == parent);
+            RBTNode<T> uncle = isParentLeft ? (RBTNode<T>) grandparent.childRight() : (RBTNode<T>) grandparent.childLeft();
+
+            if (uncle != null && uncle.isRed()) {
+                parent.flipColor();
+                uncle.flipColor();
+                grandparent.flipColor();
+                node = grandparent;
+                continue;
+            }
+
+            if (isParentLeft && parent.childRight() == node) { 
+                rotate(node, parent);
+                node = parent;
+                parent = (RBTNode<T>) node.parent();
+            } else if (!isParentLeft && parent.childLeft() == node) {
+                rotate(node, parent);
+                node = parent;
+                parent = (RBTNode<T>) node.parent();
+            }
+
+            rotate(parent, grandparent);
+
+            parent.flipColor();
+            grandparent.flipColor();
+
+            ((RBTNode<T>) root).isRed = false;
             return;
         }
+    }
 
-        if (!node.parent().isRed()) {
-            return;
+    /**
+     * Removes one value that compares equal to data from this tree, and restores
+     * the red-black properties with recolorings and at most three rotations.
+     * When several values compare equal to data, the one that equals data is
+     * removed if there is such a value, and otherwise the first of them in
+     * sorted order is removed. Finding that value checks the k values that compare
+     * equal to data with equals, so a removal takes O(log n + k) time, which is
+     * O(log n) when values are distinct.
+     * @param data the value to remove
+     * @return true if a value was removed, false if no value matched data
+     */
+    public boolean remove(Comparable<T> data) {
+        if (data == null || root == null) return false;
+
+        // find the first node that compares equal to data
+        BinaryTreeNode<T> first = null;
+        BinaryTreeNode<T> current = root;
+        while (current != null) {
+            int comparison = data.compareTo(current.getData());
+            if (comparison == 0) first = current;
+            current = comparison <= 0 ? current.childLeft() : current.childRight();
         }
+        if (first == null) return false;
 
-        RBTNode<T> parent = (RBTNode<T>) node.parent();
-        RBTNode<T> grandparent = (RBTNode<T>) parent.parent();
+        // prefer data itself among the values that compare equal to it
+        for (BinaryTreeNode<T> node = first; node != null && data.compareTo(node.getData()) == 0;
+             node = successor(node)) {
+            for (int i = 0; i < node.valueCount(); i++) {
+                if (node.getValue(i).equals(data)) {
+                    removeValue((RBTNode<T>) node, i);
+                    return true;
+                }
+            }
+        }
+        removeValue((RBTNode<T>) first, 0);
+        return true;
+    }
 
-        if (grandparent == null) {
+    /**
+     * Removes the value at position index of node. The node itself is only unlinked
+     * when this was its last value.
+     * @param node the node holding the value
+     * @param index the position of the value within node
+     */
+    private void removeValue(RBTNode<T> node, int index) {
+        if (node.valueCount() == 1) {
+            removeNode(node);
             return;
         }
+        modifications++;
+        if (index == 0) {
+            node.setData(node.duplicates.remove(0));
+        } else {
+            node.duplicates.remove(index - 1);
+        }
+        if (node.duplicates.isEmpty()) node.duplicates = null;
+        for (BinaryTreeNode<T> ancestor = node; ancestor != null; ancestor = ancestor.parent()) {
+            updateNode(ancestor);
+        }
+    }
 
-        boolean isParentLeft = (grandparent.childLeft() == parent);
-        RBTNode<T> uncle = isParentLeft ? (RBTNode<T>) grandparent.childRight() : (RBTNode<T>) grandparent.childLeft();
+    /**
+     * Removes every value between min and max from this tree, including min and
+     * max themselves. Each removal takes O(log n).
+     * @param min the smallest value to remove, or null for no minimum
+     * @param max the largest value to remove, or null for no maximum
+     * @return the number of values removed
+     */
+    public int removeRange(Comparable<T> min, Comparable<T> max) {
+        int removed = 0;
+        while (true) {
+            // find the first node at or above min, from the root each time since
+            // removing a node may move values between the remaining nodes
+            BinaryTreeNode<T> first = null;
+            BinaryTreeNode<T> current = root;
+            while (current != null) {
+                if (min == null || min.compareTo(current.getData()) <= 0) {
+                    first = current;
+                    current = current.childLeft();
+                } else {
+                    current = current.childRight();
+                }
+            }
+            if (first == null || (max != null && max.compareTo(first.getData()) < 0)) {
+                return removed;
+            }
+            removed += first.valueCount();
+            removeNode((RBTNode<T>) first);
+        }
+    }
 
-        if (uncle != null && uncle.isRed()) {
-            parent.flipColor();
-            uncle.flipColor();
-            grandparent.flipColor();
-            ensureRedProperty(grandparent);
-            return;
+    /**
+     * Unlinks the values stored in node from this tree. A node with two children
+     * takes over the values of its successor, which is unlinked instead.
+     * @param node the node holding the values to remove
+     */
+    protected void removeNode(RBTNode<T> node) {
+        modifications++;
+        if (node.childLeft() != null && node.childRight() != null) {
+            RBTNode<T> next = (RBTNode<T>) successor(node);
+            node.setData(next.getData());
+            node.duplicates = next.duplicates;
+            node = next;
         }
 
-        if (isParentLeft && parent.childRight() == node) { 
-            rotate(node, parent);
-            node = parent;
-            parent = (RBTNode<T>) node.parent();
-        } else if (!isParentLeft && parent.childLeft() == node) {
-            rotate(node, parent);
-            node = parent;
-            parent = (RBTNode<T>) node.parent();
+        // node now has at most one child, which takes its place
+        RBTNode<T> child = node.childLeft() != null ? node.childLeft() : node.childRight();
+        RBTNode<T> parent = node.parent();
+        if (child != null) child.setParent(parent);
+        if (parent == null) {
+            root = child;
+        } else if (parent.childLeft() == node) {
+            parent.setChildLeft(child);
+        } else {
+            parent.setChildRight(child);
+        }
+        for (BinaryTreeNode<T> ancestor = parent; ancestor != null; ancestor = ancestor.parent()) {
+            updateNode(ancestor);
         }
 
-        if (isParentLeft) {
-            rotate(parent, grandparent);
+        // removing a black node leaves its path one black node short
+        if (!node.isRed()) {
+            if (child != null && child.isRed()) {
+                child.isRed = false;
+            } else {
+                ensureBlackHeight(child, parent);
+            }
+        }
+        node.setParent(null);
+        node.setChildLeft(null);
+        node.setChildRight(null);
+        node.duplicates = null;
+        if (pool != null) pool.push(node);
+    }
+
+    /**
+     * Resolves a double-black position left behind by removing a black node.
+     * @param node the node in the double-black position, may be null
+     * @param parent the parent of that position
+     */
+    protected void ensureBlackHeight(RBTNode<T> node, RBTNode<T> parent) {
+        while (node != root && !isRed(node)) {
+            boolean isLeft = parent.childLeft() == node;
+            RBTNode<T> sibling = isLeft ? parent.childRight() : parent.childLeft();
+
+            // a red sibling is rotated above parent so that the new sibling is black
+            if (sibling.isRed()) {
+                sibling.isRed = false;
+                parent.isRed = true;
+                rotate(sibling, parent);
+                sibling = isLeft ? parent.childRight() : parent.childLeft();
+            }
+
+            RBTNode<T> near = isLeft ? sibling.childLeft() : sibling.childRight();
+            RBTNode<T> far = isLeft ? sibling.childRight() : sibling.childLeft();
+            if (!isRed(near) && !isRed(far)) {
+                // push the missing black up to parent
+                sibling.isRed = true;
+                node = parent;
+                parent = node.parent();
+            } else {
+                if (!isRed(far)) {
+                    // rotate the red near nephew into the far position
+                    near.isRed = false;
+                    sibling.isRed = true;
+                    rotate(near, sibling);
+                    far = sibling;
+                    sibling = near;
+                }
+                sibling.isRed = parent.isRed;
+                parent.isRed = false;
+                far.isRed = false;
+                rotate(sibling, parent);
+                node = (RBTNode<T>) root;
+            }
+        }
+        if (node != null) node.isRed = false;
+    }
+
+    /**
+     * The set operations that combine this tree with another one.
+     */
+    protected enum SetOperation { UNION, INTERSECTION, DIFFERENCE }
+
+    // merges of fewer values than this run on the calling thread
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * Adds every value of other to this tree, as if each of them had been inserted.
+     * Other is left unchanged. The trees are combined by splitting this tree around
+     * the values of other and joining the pieces back together, which takes
+     * O(m log(n/m + 1)) work for m values in other and n in this tree, after O(m) to
+     * copy other. Independent subtrees are merged in parallel.
+     * @param other the tree whose values to add
+     */
+    public void union(RedBlackTree<T> other) {
+        applySetOperation(SetOperation.UNION, other.copyNodes(this));
+    }
+
+    /**
+     * Keeps only the values of this tree that compare equal to a value in other.
+     * Runs in the same time as union.
+     * @param other the tree whose values to keep
+     */
+    public void intersection(RedBlackTree<T> other) {
+        applySetOperation(SetOperation.INTERSECTION, other.copyNodes(this));
+    }
+
+    /**
+     * Removes every value of this tree that compares equal to a value in other.
+     * Runs in the same time as union.
+     * @param other the tree whose values to remove
+     */
+    public void difference(RedBlackTree<T> other) {
+        applySetOperation(SetOperation.DIFFERENCE, other.copyNodes(this));
+    }
+
+    /**
+     * Copies the nodes of this tree, keeping their colors, for use by a set operation
+     * on target. The copies are updated with target's updateNode.
+     * @param target the tree the copied nodes will become part of
+     * @return the root of the copy, or null when this tree is empty
+     */
+    protected RBTNode<T> copyNodes(RedBlackTree<T> target) {
+        return target.copy((RBTNode<T>) root);
+    }
+
+    private RBTNode<T> copy(RBTNode<T> node) {
+        if (node == null) return null;
+        RBTNode<T> copy = newNode(node.getData());
+        copy.isRed = node.isRed;
+        if (node.duplicates != null) copy.duplicates = new ArrayList<>(node.duplicates);
+        return link(copy, copy(node.childLeft()), copy(node.childRight()));
+    }
+
+    /**
+     * Replaces the contents of this tree with the result of combining it with the
+     * nodes of other, which become part of this tree.
+     * @param operation the set operation to apply
+     * @param other the root of a tree that no other tree shares nodes with, may be null
+     */
+    protected void applySetOperation(SetOperation operation, RBTNode<T> other) {
+        RBTNode<T> merged = merge(operation, (RBTNode<T>) root, other);
+        if (merged != null) {
+            merged.setParent(null);
+            merged.isRed = false;
+        }
+        root = merged;
+        modifications++;
+    }
+
+    /**
+     * Combines two detached subtrees by splitting mine around the root of other,
+     * and merging the smaller and larger halves independently.
+     * @return the root of the combined subtree, which may be red
+     */
+    private RBTNode<T> merge(SetOperation operation, RBTNode<T> mine, RBTNode<T> other) {
+        if (other == null) return operation == SetOperation.INTERSECTION ? null : mine;
+        if (mine == null) return operation == SetOperation.UNION ? other : null;
+
+        boolean parallel = mine.size + other.size >= PARALLEL_THRESHOLD;
+        RBTNode<T> otherLeft = other.childLeft();
+        RBTNode<T> otherRight = other.childRight();
+        detach(other);
+        // values equal to the root of other may be on both sides of it, but in mine
+        // they all end up in parts.equal
+        Split<T> parts = split(mine, other.getData());
+
+        RBTNode<T> lower;
+        RBTNode<T> upper;
+        if (parallel) {
+            ForkJoinTask<RBTNode<T>> task =
+                ForkJoinTask.adapt(() -> merge(operation, parts.lower, otherLeft)).fork();
+            upper = merge(operation, parts.upper, otherRight);
+            lower = task.join();
         } else {
-            rotate(parent, grandparent);
+            lower = merge(operation, parts.lower, otherLeft);
+            upper = merge(operation, parts.upper, otherRight);
         }
 
-        parent.flipColor();
-        if (grandparent != null) {
-            grandparent.flipColor();
+        switch (operation) {
+            case UNION:
+                if (parts.equal != null && mergeValues(parts.equal, other)) {
+                    return join(lower, parts.equal, upper);
+                }
+                // the values of other go before equal values, as insert would put them
+                return concat(join(lower, other, parts.equal), upper);
+            case INTERSECTION:
+                return concat(concat(lower, parts.equal), upper);
+            default:
+                return concat(lower, upper);
         }
+    }
 
-        ((RBTNode<T>) root).isRed = false;
+    /**
+     * Called by union when other's node compares equal to the values split out of
+     * this tree, to let trees that keep equal values in a single node combine them.
+     * @param equal the root of the subtree holding the equal values of this tree
+     * @param node a node of other, without children
+     * @return true if the values of node were moved into equal, false to keep node
+     */
+    protected boolean mergeValues(RBTNode<T> equal, RBTNode<T> node) {
+        return false;
+    }
+
+    /**
+     * The three subtrees of values below, equal to and above a key.
+     */
+    private static final class Split<T> {
+        RBTNode<T> lower;
+        RBTNode<T> equal;
+        RBTNode<T> upper;
+    }
+
+    /**
+     * Splits a detached subtree into the values smaller than, equal to and larger
+     * than key, with two splits that each take O(log n).
+     */
+    private Split<T> split(RBTNode<T> node, T key) {
+        Split<T> below = split(node, key, false);
+        Split<T> above = split(below.upper, key, true);
+        below.equal = above.lower;
+        below.upper = above.upper;
+        return below;
+    }
+
+    /**
+     * Splits a detached subtree into the values below key, returned as lower, and the
+     * other values, returned as upper. Values equal to key go to lower only when
+     * inclusive is true.
+     */
+    private Split<T> split(RBTNode<T> node, T key, boolean inclusive) {
+        if (node == null) return new Split<>();
+        int comparison = key.compareTo(node.getData());
+        RBTNode<T> left = node.childLeft();
+        RBTNode<T> right = node.childRight();
+        detach(node);
+        if (comparison > 0 || (inclusive && comparison == 0)) {
+            Split<T> parts = split(right, key, inclusive);
+            parts.lower = join(left, node, parts.lower);
+            return parts;
+        }
+        Split<T> parts = split(left, key, inclusive);
+        parts.upper = join(parts.upper, node, right);
+        return parts;
+    }
+
+    /**
+     * Joins two detached subtrees and a detached node between them into one subtree,
+     * where no value of left is larger and no value of right smaller than middle.
+     * Takes time proportional to the difference of their black heights.
+     * @return the root of the joined subtree, which may be red
+     */
+    private RBTNode<T> join(RBTNode<T> left, RBTNode<T> middle, RBTNode<T> right) {
+        // a red root can always be made black, so both sides start with a black root
+        if (isRed(left)) left.isRed = false;
+        if (isRed(right)) right.isRed = false;
+        int leftHeight = blackHeight(left);
+        int rightHeight = blackHeight(right);
+        if (leftHeight > rightHeight) {
+            RBTNode<T> joined = joinRight(left, leftHeight, middle, right, rightHeight);
+            if (joined.isRed && isRed(joined.childRight())) joined.isRed = false;
+            return joined;
+        }
+        if (rightHeight > leftHeight) {
+            RBTNode<T> joined = joinLeft(left, leftHeight, middle, right, rightHeight);
+            if (joined.isRed && isRed(joined.childLeft())) joined.isRed = false;
+            return joined;
+        }
+        middle.isRed = true;
+        return link(middle, left, right);
+    }
+
+    /**
+     * Descends the right spine of left to the black node whose black height matches
+     * right, and puts middle there as a red node. A red node below a red parent is
+     * fixed by a rotation on the way back up.
+     */
+    private RBTNode<T> joinRight(RBTNode<T> left, int leftHeight, RBTNode<T> middle,
+                                 RBTNode<T> right, int rightHeight) {
+        if (!isRed(left) && leftHeight == rightHeight) {
+            middle.isRed = true;
+            return link(middle, left, right);
+        }
+        RBTNode<T> child = joinRight(left.childRight(), leftHeight - (left.isRed ? 0 : 1),
+                                     middle, right, rightHeight);
+        link(left, left.childLeft(), child);
+        if (!left.isRed && child.isRed && isRed(child.childRight())) {
+            child.childRight().isRed = false;
+            return rotateUp(child, left);
+        }
+        return left;
+    }
+
+    /**
+     * The mirror image of joinRight, for a right subtree that is higher than left.
+     */
+    private RBTNode<T> joinLeft(RBTNode<T> left, int leftHeight, RBTNode<T> middle,
+                                RBTNode<T> right, int rightHeight) {
+        if (!isRed(right) && leftHeight == rightHeight) {
+            middle.isRed = true;
+            return link(middle, left, right);
+        }
+        RBTNode<T> child = joinLeft(left, leftHeight, middle, right.childLeft(),
+                                    rightHeight - (right.isRed ? 0 : 1));
+        link(right, child, right.childRight());
+        if (!right.isRed && child.isRed && isRed(child.childLeft())) {
+            child.childLeft().isRed = false;
+            return rotateUp(child, right);
+        }
+        return right;
+    }
+
+    /**
+     * Joins two detached subtrees, where no value of left is larger than a value of
+     * right, using the last node of left as the middle node.
+     */
+    private RBTNode<T> concat(RBTNode<T> left, RBTNode<T> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        Split<T> parts = splitLast(left);
+        return join(parts.lower, parts.equal, right);
+    }
+
+    /**
+     * Splits a detached subtree into its last node, returned as equal, and a subtree
+     * of the other nodes, returned as lower.
+     */
+    private Split<T> splitLast(RBTNode<T> node) {
+        RBTNode<T> left = node.childLeft();
+        RBTNode<T> right = node.childRight();
+        detach(node);
+        if (right == null) {
+            Split<T> parts = new Split<>();
+            parts.lower = left;
+            parts.equal = node;
+            return parts;
+        }
+        Split<T> parts = splitLast(right);
+        parts.lower = join(left, node, parts.lower);
+        return parts;
+    }
+
+    /**
+     * Rotates child above parent within a detached subtree, keeping their colors.
+     * @return child, the new root of the subtree
+     */
+    private RBTNode<T> rotateUp(RBTNode<T> child, RBTNode<T> parent) {
+        if (parent.childRight() == child) {
+            link(parent, parent.childLeft(), child.childLeft());
+            link(child, parent, child.childRight());
+        } else {
+            link(parent, child.childRight(), parent.childRight());
+            link(child, child.childLeft(), parent);
+        }
+        child.setParent(null);
+        return child;
+    }
+
+    /**
+     * Makes left and right the children of node and updates its size.
+     * @return node
+     */
+    private RBTNode<T> link(RBTNode<T> node, RBTNode<T> left, RBTNode<T> right) {
+        node.setChildLeft(left);
+        node.setChildRight(right);
+        if (left != null) left.setParent(node);
+        if (right != null) right.setParent(node);
+        updateNode(node);
+        return node;
+    }
+
+    /**
+     * Removes the links between node and its parent and children.
+     */
+    private void detach(RBTNode<T> node) {
+        if (node.childLeft() != null) node.childLeft().setParent(null);
+        if (node.childRight() != null) node.childRight().setParent(null);
+        node.setParent(null);
+        node.setChildLeft(null);
+        node.setChildRight(null);
+    }
+
+    /**
+     * @return the number of black nodes on each path from node down to a leaf
+     */
+    private static int blackHeight(RBTNode<?> node) {
+        int height = 0;
+        for (; node != null; node = node.childLeft()) {
+            if (!node.isRed()) height++;
+        }
+        return height;
+    }
+
+    /**
+     * @return true if node is a red node, false if it is black or null
+     */
+    private static boolean isRed(RBTNode<?> node) {
+        return node != null && node.isRed();
     }
 
     public String levelOrderTraversal() {
@@ -146,17 +736,157 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
             assertTrue(isValidRedBlackTree(tree), "Tree violates Red-Black properties after insertion");
         }
 
-        private boolean isValidRedBlackTree(RedBlackTree<String> tree) {
-            return validateRedProperty((RBTNode<String>) tree.root) && validateBlackHeight((RBTNode<String>) tree.root) != -1;
+        @Test
+        public void testRemoveKeepsProperties() {
+            RedBlackTree<Integer> numbers = new RedBlackTree<>();
+            java.util.Random random = new java.util.Random(400);
+            java.util.List<Integer> expected = new java.util.ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                int value = random.nextInt(200);
+                numbers.insert(value);
+                expected.add(value);
+            }
+            for (int i = 0; i < 300; i++) {
+                int value = random.nextInt(220);
+                assertEquals(expected.remove(Integer.valueOf(value)), numbers.remove(value),
+                        "remove result mismatch for " + value);
+                assertTrue(isValidRedBlackTree(numbers), "Tree violates Red-Black properties after removal");
+                assertEquals(expected.size(), numbers.size(), "Size mismatch after removal");
+            }
+            for (int value : expected) {
+                assertTrue(numbers.contains(value), "Remaining value missing: " + value);
+            }
+        }
+
+        @Test
+        public void testRemoveRange() {
+            RedBlackTree<Integer> numbers = new RedBlackTree<>();
+            for (int i = 0; i < 100; i++) numbers.insert(i % 50);
+            assertEquals(20, numbers.removeRange(10, 19));
+            assertTrue(isValidRedBlackTree(numbers), "Tree violates Red-Black properties after removeRange");
+            assertEquals(80, numbers.size());
+            assertFalse(numbers.contains(15));
+            assertTrue(numbers.contains(9) && numbers.contains(20));
+            assertEquals(20, numbers.removeRange(null, 9));
+            assertEquals(60, numbers.removeRange(20, null));
+            assertTrue(numbers.isEmpty());
+        }
+
+        @Test
+        public void testSortedInsertsWithSmallStack() throws InterruptedException {
+            // run on a thread with a small stack, so that any recursion proportional
+            // to the tree height or size would overflow it
+            RedBlackTree<Integer> numbers = new RedBlackTree<>();
+            Throwable[] failure = new Throwable[1];
+            Thread inserter = new Thread(null, () -> {
+                try {
+                    for (int i = 0; i < 5_000_000; i++) numbers.insert(i);
+                    assertTrue(numbers.contains(0) && numbers.contains(4_999_999) && !numbers.contains(-1));
+                    assertTrue(numbers.root.toInOrderString().length() > 0);
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            }, "small-stack", 128 * 1024);
+            inserter.start();
+            inserter.join();
+            assertNull(failure[0], () -> "Sorted inserts failed: " + failure[0]);
+            assertEquals(5_000_000, numbers.size());
+        }
+
+        @Test
+        public void testSetOperations() {
+            java.util.Random random = new java.util.Random(1600);
+            // the largest sizes are merged in parallel
+            int[][] sizes = { {0, 5}, {5, 0}, {1, 300}, {300, 1}, {200, 200}, {3000, 40}, {40000, 30000} };
+            for (int[] size : sizes) {
+                java.util.List<Integer> first = new java.util.ArrayList<>();
+                java.util.List<Integer> second = new java.util.ArrayList<>();
+                for (int i = 0; i < size[0]; i++) first.add(random.nextInt(size[0] + size[1]));
+                for (int i = 0; i < size[1]; i++) second.add(random.nextInt(size[0] + size[1]));
+                java.util.Set<Integer> inSecond = new java.util.HashSet<>(second);
+
+                java.util.List<Integer> union = new java.util.ArrayList<>(first);
+                union.addAll(second);
+                java.util.List<Integer> intersection = new java.util.ArrayList<>(first);
+                intersection.removeIf(value -> !inSecond.contains(value));
+                java.util.List<Integer> difference = new java.util.ArrayList<>(first);
+                difference.removeIf(inSecond::contains);
+
+                RedBlackTree<Integer> other = new RedBlackTree<>();
+                for (int value : second) other.insert(value);
+                RedBlackTree<Integer> result = new RedBlackTree<>();
+                for (int value : first) result.insert(value);
+                result.union(other);
+                checkContents(union, result);
+                result = new RedBlackTree<>();
+                for (int value : first) result.insert(value);
+                result.intersection(other);
+                checkContents(intersection, result);
+                result = new RedBlackTree<>();
+                for (int value : first) result.insert(value);
+                result.difference(other);
+                checkContents(difference, result);
+                // the argument of a set operation is left unchanged
+                checkContents(second, other);
+            }
+        }
+
+        @Test
+        public void testNodePooling() {
+            RedBlackTree<Integer> numbers = new RedBlackTree<>();
+            numbers.setNodePooling(true);
+            java.util.List<Integer> values = new java.util.ArrayList<>();
+            for (int i = 0; i < 1000; i++) values.add((i * 7919) % 1000);
+            for (int value : values) numbers.insert(value);
+            assertEquals(1000, numbers.getNodesAllocated());
+            for (int value = 0; value < 100; value++) assertTrue(numbers.remove(value));
+
+            // the removed nodes and the cleared tree are reused before any new node
+            numbers.clear();
+            for (int value : values) numbers.insert(value);
+            assertEquals(1000, numbers.getNodesAllocated());
+            assertEquals(1000, numbers.getNodesReused());
+            checkContents(values, numbers);
+            numbers.insert(1000);
+            assertEquals(1001, numbers.getNodesAllocated());
+
+            numbers.setNodePooling(false);
+            numbers.clear();
+            numbers.insert(1);
+            assertEquals(1002, numbers.getNodesAllocated());
+        }
+
+        /**
+         * Checks that tree is a valid red-black tree with correct subtree sizes that
+         * holds exactly the given values.
+         */
+        private void checkContents(java.util.List<Integer> expected, RedBlackTree<Integer> tree) {
+            assertTrue(isValidRedBlackTree(tree), "Tree violates Red-Black properties");
+            java.util.List<Integer> actual = new java.util.ArrayList<>();
+            BinaryTreeNode<Integer> node = tree.root;
+            while (node != null && node.childLeft() != null) node = node.childLeft();
+            for (; node != null; node = successor(node)) {
+                assertEquals(node.valueCount() + sizeOf(node.childLeft()) + sizeOf(node.childRight()),
+                             node.subtreeSize(), "Wrong subtree size");
+                actual.add(node.getData());
+            }
+            expected = new java.util.ArrayList<>(expected);
+            expected.sort(null);
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), tree.size());
+        }
+
+        private <E extends Comparable<E>> boolean isValidRedBlackTree(RedBlackTree<E> tree) {
+            return validateRedProperty((RBTNode<E>) tree.root) && validateBlackHeight((RBTNode<E>) tree.root) != -1;
         }
 
-        private boolean validateRedProperty(RBTNode<String> node) {
+        private <E> boolean validateRedProperty(RBTNode<E> node) {
             if (node == null) return true;
             if (node.isRed && node.parent() != null && node.parent().isRed) return false;
             return validateRedProperty(node.childLeft()) && validateRedProperty(node.childRight());
         }
 
-        private int validateBlackHeight(RBTNode<String> node) {
+        private <E> int validateBlackHeight(RBTNode<E> node) {
             if (node == null) return 1;
             int leftHeight = validateBlackHeight(node.childLeft());
             int rightHeight = validateBlackHeight(node.childRight());
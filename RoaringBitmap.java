@@ -0,0 +1,440 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A compressed set of non-negative ints in the style of a roaring bitmap. Values are
+ * grouped by their upper 16 bits, and the lower 16 bits of each group are kept in a
+ * container: a sorted array of chars while the group holds at most 4096 values, and a
+ * bitmap of 65536 bits once it holds more, which then takes less space than the array.
+ * So sparse groups cost two bytes per value and dense groups one bit per value, and
+ * and, or and andNot combine two bitmaps one pair of containers at a time, with merges
+ * of arrays or word by word operations on bitmaps.
+ */
+public class RoaringBitmap {
+
+    // the most values an array container holds, where both kinds take 8 KiB
+    private static final int ARRAY_LIMIT = 4096;
+
+    private char[] keys = new char[4]; // the upper 16 bits of the values in each container
+    private Container[] containers = new Container[4];
+    private int size = 0; // the number of containers
+
+    /**
+     * Adds value to this set.
+     * @param value the value to add
+     * @throws IllegalArgumentException when value is negative
+     */
+    public void add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Cannot add negative value: " + value);
+        char key = (char) (value >>> 16);
+        // values are often added in ascending order, which only ever touches the last container
+        int index = size > 0 && keys[size - 1] == key ? size - 1 : Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer(new char[4], 0));
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    /**
+     * @return true if value is in this set
+     */
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * @return the number of values in this set
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    /**
+     * @return true if this set holds no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a new set of the values in both this set and other
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i++].and(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new set of the values in this set, other, or both
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i++].copy());
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.append(keys[i], containers[i++].or(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new set of the values in this set that are not in other
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes every value of this set to action, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    /**
+     * @return the values of this set, in ascending order
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] next = {0};
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Adds a container after all containers of this set, unless it is empty.
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() > 0) insertContainer(size, key, container);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            containers = Arrays.copyOf(containers, 2 * size);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * The lower 16 bits of the values of one group. Operations that can change the kind
+     * of container return the container to use from then on.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract Container copy();
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    /**
+     * A container holding its values in a sorted array.
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = cardinality > 0 && values[cardinality - 1] < value
+                ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) return this;
+            if (cardinality == ARRAY_LIMIT) return toBitmap().add(value);
+            index = -index - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, 2 * cardinality));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int j = 0;
+                for (int i = 0; i < cardinality && j < array.cardinality; ) {
+                    if (values[i] < array.values[j]) i++;
+                    else if (values[i] > array.values[j]) j++;
+                    else {
+                        result[count++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_LIMIT) return toBitmap().or(other);
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0, i = 0, j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) result[count++] = values[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) action.accept(high | values[i]);
+        }
+
+        BitmapContainer toBitmap() {
+            long[] words = new long[1024];
+            for (int i = 0; i < cardinality; i++) words[values[i] >>> 6] |= 1L << values[i];
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * A container holding one bit for each of the 65536 possible values.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @return a container of the bits in words, as an array when there are few enough
+         */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) cardinality += Long.bitCount(word);
+            if (cardinality > ARRAY_LIMIT) return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[count++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            for (int w = 0; w < 1024; w++) result[w] = words[w] & otherWords[w];
+            return of(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) result[array.values[i] >>> 6] |= 1L << array.values[i];
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int w = 0; w < 1024; w++) result[w] |= otherWords[w];
+            }
+            return of(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int w = 0; w < 1024; w++) result[w] &= ~otherWords[w];
+            }
+            return of(result);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int w = 0; w < 1024; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    action.accept(high | (w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests add, contains and the set operations against TreeSets, for sets whose
+     * groups are sparse, dense, and in between the two kinds of containers.
+     */
+    @Test
+    public void testSetOperations() {
+        Random random = new Random(29);
+        for (int round = 0; round < 20; round++) {
+            RoaringBitmap[] bitmaps = {new RoaringBitmap(), new RoaringBitmap()};
+            List<TreeSet<Integer>> sets = List.of(new TreeSet<>(), new TreeSet<>());
+            for (int b = 0; b < 2; b++) {
+                // the number of values per group ranges from a few to most of the group
+                int count = random.nextInt(3 * ARRAY_LIMIT * (1 + round % 5));
+                int range = 4 << 16;
+                for (int i = 0; i < count; i++) {
+                    int value = round % 2 == 0 ? random.nextInt(range) : i * (range / Math.max(1, count));
+                    bitmaps[b].add(value);
+                    sets.get(b).add(value);
+                }
+                assertEquals(sets.get(b).size(), bitmaps[b].cardinality());
+                assertEquals(toList(sets.get(b)), toList(bitmaps[b]));
+            }
+
+            TreeSet<Integer> and = new TreeSet<>(sets.get(0));
+            and.retainAll(sets.get(1));
+            TreeSet<Integer> or = new TreeSet<>(sets.get(0));
+            or.addAll(sets.get(1));
+            TreeSet<Integer> andNot = new TreeSet<>(sets.get(0));
+            andNot.removeAll(sets.get(1));
+            assertEquals(toList(and), toList(bitmaps[0].and(bitmaps[1])));
+            assertEquals(toList(or), toList(bitmaps[0].or(bitmaps[1])));
+            assertEquals(toList(andNot), toList(bitmaps[0].andNot(bitmaps[1])));
+            assertEquals(or.size(), bitmaps[0].or(bitmaps[1]).cardinality());
+
+            for (int i = 0; i < 1000; i++) {
+                int value = random.nextInt(5 << 16);
+                assertEquals(sets.get(0).contains(value), bitmaps[0].contains(value));
+            }
+        }
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        assertTrue(bitmap.isEmpty());
+        bitmap.add(Integer.MAX_VALUE);
+        bitmap.add(0);
+        bitmap.add(0);
+        assertArrayEquals(new int[] {0, Integer.MAX_VALUE}, bitmap.toArray());
+        assertFalse(bitmap.contains(-1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    private static List<Integer> toList(Iterable<Integer> values) {
+        List<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        return list;
+    }
+
+    private static List<Integer> toList(RoaringBitmap bitmap) {
+        List<Integer> list = new ArrayList<>();
+        bitmap.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A columnar copy of a list of songs. Each attribute is kept in its own int array, and
+ * the songs in one more array, all indexed by row. A scan for the songs whose attributes
+ * fall within bounds reads each bounded column from start to end instead of following a
+ * pointer to every Song, so it streams through memory in order. Each column is compared
+ * with its bounds 64 rows at a time, without branches, into one word of a bitmap, and the
+ * bitmaps of all bounded columns are and-ed together before any song is visited.
+ */
+public class SongColumns {
+
+    // the names of the columns, in the order of their indexes
+    public static final List<String> ATTRIBUTES = List.of("year", "bpm", "energy", "danceability",
+                                                          "loudness", "liveness");
+
+    private int[][] columns = new int[ATTRIBUTES.size()][16];
+    private Song[] songs = new Song[16];
+    private int size = 0;
+
+    /**
+     * @return the index of the column holding attribute
+     * @throws IllegalArgumentException when attribute is not one of ATTRIBUTES
+     */
+    public static int column(String attribute) {
+        int column = attribute == null ? -1 : ATTRIBUTES.indexOf(attribute.toLowerCase());
+        if (column < 0) throw new IllegalArgumentException("Unknown song attribute: " + attribute);
+        return column;
+    }
+
+    /**
+     * Adds songs as the next rows, in the order of the list.
+     * @param added the songs to add
+     */
+    public void addAll(List<Song> added) {
+        if (size + added.size() > songs.length) {
+            int capacity = Math.max(size + added.size(), 2 * songs.length);
+            songs = Arrays.copyOf(songs, capacity);
+            for (int c = 0; c < columns.length; c++) columns[c] = Arrays.copyOf(columns[c], capacity);
+        }
+        for (Song song : added) {
+            columns[0][size] = song.getYear();
+            columns[1][size] = song.getBPM();
+            columns[2][size] = song.getEnergy();
+            columns[3][size] = song.getDanceability();
+            columns[4][size] = song.getLoudness();
+            columns[5][size] = song.getLiveness();
+            songs[size++] = song;
+        }
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the song in row
+     * @throws IndexOutOfBoundsException when row is negative or not less than size()
+     */
+    public Song get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        return songs[row];
+    }
+
+    /**
+     * Removes every row.
+     */
+    public void clear() {
+        columns = new int[ATTRIBUTES.size()][16];
+        songs = new Song[16];
+        size = 0;
+    }
+
+    /**
+     * @return true if the value of each column c of song is between min[c] and max[c],
+     *     including both bounds, which is when select would return its row
+     */
+    public static boolean matches(Song song, int[] min, int[] max) {
+        int[] values = {song.getYear(), song.getBPM(), song.getEnergy(), song.getDanceability(),
+                        song.getLoudness(), song.getLiveness()};
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] < min[c] || values[c] > max[c]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the rows whose value of each column c is between min[c] and max[c],
+     * including both bounds.
+     * @param min the smallest value accepted in each column, indexed like ATTRIBUTES
+     * @param max the largest value accepted in each column, indexed like ATTRIBUTES
+     * @return the matching rows, in ascending order
+     * @throws IllegalArgumentException when min or max does not have one bound per column
+     */
+    public int[] select(int[] min, int[] max) {
+        if (min.length != columns.length || max.length != columns.length) {
+            throw new IllegalArgumentException("Expected one bound per column, got " + min.length + " and " + max.length);
+        }
+        long[] words = new long[(size + 63) >>> 6];
+        Arrays.fill(words, -1L);
+        if (size % 64 != 0) words[words.length - 1] = -1L >>> (64 - size % 64);
+        for (int c = 0; c < columns.length; c++) {
+            if (min[c] > max[c]) return new int[0];
+            if (min[c] != Integer.MIN_VALUE || max[c] != Integer.MAX_VALUE) {
+                match(columns[c], min[c], max[c], words);
+            }
+        }
+
+        int count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        int[] rows = new int[count];
+        int next = 0;
+        for (int w = 0; w < words.length; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                rows[next++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Clears the bit of every row in words whose value in column is not between min and
+     * max. As unsigned numbers, value - min is at most max - min exactly when value is
+     * between min and max, and the sign of the difference of the two in a long gives that
+     * comparison as a bit, so the inner loop has no branches. Words without any bits left
+     * are skipped, which speeds up the later columns of selective scans.
+     */
+    private void match(int[] column, int min, int max, long[] words) {
+        long span = (max - min) & 0xFFFFFFFFL;
+        for (int w = 0; w < words.length; w++) {
+            if (words[w] == 0) continue;
+            int base = w << 6;
+            int end = Math.min(64, size - base);
+            long bits = 0;
+            for (int bit = 0; bit < end; bit++) {
+                long offset = (column[base + bit] - min) & 0xFFFFFFFFL;
+                bits |= ((span - offset) >>> 63 ^ 1) << bit;
+            }
+            words[w] &= bits;
+        }
+    }
+
+    /**
+     * Tests that select returns the same rows as checking every row against its bounds,
+     * for random bounds on random numbers of columns, including extreme values.
+     */
+    @Test
+    public void testSelect() {
+        Random random = new Random(23);
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            songs.add(new Song("Song " + i, "", "", 2000 + random.nextInt(20), random.nextInt(200),
+                               random.nextInt(101), random.nextInt(101), -random.nextInt(60), random.nextInt(101)));
+        }
+        songs.add(new Song("Extremes", "", "", Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0, 0, 0));
+        SongColumns columns = new SongColumns();
+        assertEquals(0, columns.select(new int[6], new int[6]).length);
+        columns.addAll(songs.subList(0, 500));
+        columns.addAll(songs.subList(500, songs.size()));
+        assertEquals(songs.size(), columns.size());
+        assertSame(songs.get(700), columns.get(700));
+
+        for (int round = 0; round < 200; round++) {
+            int[] min = new int[6];
+            int[] max = new int[6];
+            Arrays.fill(min, Integer.MIN_VALUE);
+            Arrays.fill(max, Integer.MAX_VALUE);
+            for (int c = random.nextInt(4); c > 0; c--) {
+                int column = random.nextInt(6);
+                int value = songs.get(random.nextInt(songs.size())).getBPM() - 100;
+                min[column] = value - random.nextInt(40);
+                max[column] = value + random.nextInt(40);
+            }
+            if (round == 0) min[1] = Integer.MAX_VALUE;
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < songs.size(); row++) {
+                Song song = songs.get(row);
+                int[] values = {song.getYear(), song.getBPM(), song.getEnergy(), song.getDanceability(),
+                                song.getLoudness(), song.getLiveness()};
+                boolean matches = true;
+                for (int c = 0; c < 6; c++) matches &= values[c] >= min[c] && values[c] <= max[c];
+                if (matches) expected.add(row);
+            }
+            assertEquals(expected, Arrays.stream(columns.select(min, max)).boxed().toList());
+            for (int row = 0; row < songs.size(); row += 7) {
+                assertEquals(expected.contains(row), SongColumns.matches(songs.get(row), min, max));
+            }
+        }
+
+        assertEquals(4, SongColumns.column("Loudness"));
+        assertThrows(IllegalArgumentException.class, () -> SongColumns.column("title"));
+        columns.clear();
+        assertEquals(0, columns.size());
+    }
+}
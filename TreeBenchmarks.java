@@ -0,0 +1,701 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Wall-clock benchmarks for the sorted collections used by iSongly. These are not
+ * JUnit tests: run them with "java TreeBenchmarks [NAME]..." to run the named
+ * benchmarks, or with no arguments to run all of them. Each benchmark repeats its
+ * measurement a few times so that the JIT has warmed up by the last round.
+ */
+public class TreeBenchmarks {
+
+    // number of measured rounds for each benchmark, the first ones act as warmup
+    private static final int ROUNDS = 5;
+
+    /**
+     * Compares loading songs into an IterableRedBlackTree with one insert per song
+     * against sorting them once and calling buildFrom.
+     * @param n the number of songs to load
+     */
+    public static void bulkLoad(int n) {
+        List<Song> songs = randomSongs(n, 1);
+        for (int round = 1; round <= ROUNDS; round++) {
+            IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+            long start = System.nanoTime();
+            for (Song song : songs) tree.insert(song);
+            long insertNanos = System.nanoTime() - start;
+
+            IterableRedBlackTree<Song> bulk = new IterableRedBlackTree<>();
+            start = System.nanoTime();
+            List<Song> sorted = new ArrayList<>(songs);
+            sorted.sort(null);
+            bulk.buildFrom(sorted);
+            long bulkNanos = System.nanoTime() - start;
+
+            report("bulkLoad", n, round, "insert", insertNanos, "sort+buildFrom", bulkNanos);
+        }
+    }
+
+    /**
+     * Compares the heap used by the nodes of an IterableRedBlackTree against the
+     * arrays of an ArrayRedBlackTree holding the same songs, and the time to
+     * iterate over all of them.
+     * @param n the number of songs to store
+     */
+    public static void footprint(int n) {
+        List<Song> songs = randomSongs(n, 2);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long before = usedHeap();
+            IterableRedBlackTree<Song> objectTree = new IterableRedBlackTree<>();
+            for (Song song : songs) objectTree.insert(song);
+            long objectBytes = usedHeap() - before;
+            long objectNanos = timeIteration(objectTree);
+            objectTree = null;
+
+            before = usedHeap();
+            ArrayRedBlackTree<Song> arrayTree = new ArrayRedBlackTree<>(n);
+            for (Song song : songs) arrayTree.insert(song);
+            long arrayBytes = usedHeap() - before;
+            long arrayNanos = timeIteration(arrayTree);
+
+            System.out.printf("%-12s n=%-9d round %d: RBTNode %6.1f MB (%.1f B/song), arrays %6.1f MB (%.1f B/song)%n",
+                              "footprint", n, round, objectBytes / 1e6, (double) objectBytes / n,
+                              arrayBytes / 1e6, (double) arrayBytes / n);
+            report("iterate", n, round, "RBTNode", objectNanos, "arrays", arrayNanos);
+        }
+    }
+
+    /**
+     * Measures read throughput with a growing number of reader threads while one
+     * writer keeps inserting songs. Each read is a contains check followed by a
+     * bounded iteration over one year of songs. A ConcurrentIterableRedBlackTree
+     * is compared against an IterableRedBlackTree whose readers and writer all share
+     * one global lock, which is how queries are serialized without it.
+     * @param n the number of songs in the tree before the readers start
+     * @param millis how long each configuration runs for
+     */
+    public static void contention(int n, int millis) throws InterruptedException {
+        List<Song> songs = randomSongs(n, 3);
+        List<Song> extra = randomSongs(n, 4);
+        int[] readerCounts = {1, 4, 16, 64};
+        for (int readers : readerCounts) {
+            ConcurrentIterableRedBlackTree<Song> stamped = new ConcurrentIterableRedBlackTree<>();
+            for (Song song : songs) stamped.insert(song);
+            long stampedOps = runContention(stamped, extra, readers, millis, false);
+
+            IterableRedBlackTree<Song> locked = new IterableRedBlackTree<>();
+            for (Song song : songs) locked.insert(song);
+            long lockedOps = runContention(locked, extra, readers, millis, true);
+
+            System.out.printf("%-12s n=%-9d readers=%-3d: StampedLock %10.0f reads/s, global lock %10.0f reads/s (%.1fx)%n",
+                              "contention", n, readers, stampedOps * 1000.0 / millis,
+                              lockedOps * 1000.0 / millis, (double) stampedOps / Math.max(1, lockedOps));
+        }
+    }
+
+    /**
+     * Compares a sequential stream over all songs of an IterableRedBlackTree against a
+     * parallel one, for a scan that filters and sums an attribute of every song.
+     * @param n the number of songs in the tree
+     */
+    public static void parallelScan(int n) {
+        List<Song> songs = randomSongs(n, 5);
+        songs.sort(null);
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.buildFrom(songs);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long sequential = tree.stream().filter(song -> song.getLoudness() < -10)
+                .mapToLong(Song::getDanceability).sum();
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long parallel = tree.parallelStream().filter(song -> song.getLoudness() < -10)
+                .mapToLong(Song::getDanceability).sum();
+            long parallelNanos = System.nanoTime() - start;
+
+            if (sequential != parallel) throw new AssertionError("Parallel scan returned a different sum");
+            report("parallelScan", n, round, "sequential", sequentialNanos, "parallel", parallelNanos);
+        }
+    }
+
+    /**
+     * Compares an IterableRedBlackTree against a BPlusTree holding the same songs, for
+     * inserting all songs, one contains check per song, and bounded iterations over one
+     * year of songs each.
+     * @param n the number of songs to store
+     */
+    public static void bplusTree(int n) {
+        List<Song> songs = randomSongs(n, 6);
+        for (int round = 1; round <= ROUNDS; round++) {
+            IterableRedBlackTree<Song> redBlack = new IterableRedBlackTree<>();
+            long start = System.nanoTime();
+            for (Song song : songs) redBlack.insert(song);
+            long redBlackInsert = System.nanoTime() - start;
+            long redBlackContains = timeContains(redBlack, songs);
+            long redBlackRange = timeRanges(redBlack, songs);
+            redBlack = null;
+
+            BPlusTree<Song> bplus = new BPlusTree<>();
+            start = System.nanoTime();
+            for (Song song : songs) bplus.insert(song);
+            long bplusInsert = System.nanoTime() - start;
+            long bplusContains = timeContains(bplus, songs);
+            long bplusRange = timeRanges(bplus, songs);
+
+            report("insert", n, round, "red-black", redBlackInsert, "B+-tree", bplusInsert);
+            report("contains", n, round, "red-black", redBlackContains, "B+-tree", bplusContains);
+            report("range", n, round, "red-black", redBlackRange, "B+-tree", bplusRange);
+        }
+    }
+
+    /**
+     * @return the time in nanoseconds to check that tree contains every song of songs
+     */
+    private static long timeContains(IterableSortedCollection<Song> tree, List<Song> songs) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (Song song : songs) {
+            if (tree.contains(song)) found++;
+        }
+        long nanos = System.nanoTime() - start;
+        if (found != songs.size()) throw new AssertionError("contains missed " + (songs.size() - found) + " songs");
+        return nanos;
+    }
+
+    /**
+     * @return the time in nanoseconds to iterate over the songs of 200 random years,
+     * each with its own bounded iterator
+     */
+    private static long timeRanges(IterableSortedCollection<Song> tree, List<Song> songs) {
+        Random random = new Random(7);
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int i = 0; i < 200; i++) {
+            Song probe = songs.get(random.nextInt(songs.size()));
+            Iterator<Song> range = tree.iterator(probe, probe);
+            while (range.hasNext()) checksum += range.next().getYear();
+        }
+        long nanos = System.nanoTime() - start;
+        if (checksum == 42) System.out.println(); // keeps the loop from being optimized away
+        return nanos;
+    }
+
+    /**
+     * Compares finding the five most danceable songs of a ten year range by sorting
+     * every song in the range, as Backend.fiveMost did, against the pruned topK search
+     * of a tree that tracks the highest danceability of each subtree.
+     * @param n the number of songs in the tree
+     */
+    public static void topK(int n) {
+        List<Song> songs = randomSongs(n, 8);
+        songs.sort(null);
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.setBucketDuplicates(true);
+        tree.setPriority(Song::getDanceability);
+        tree.buildFrom(songs);
+        Comparator<Song> byYear = Comparator.comparingInt(Song::getYear);
+        Song from = new Song("", "", "", 1990, 0, 0, 0, 0, 0, byYear);
+        Song to = new Song("", "", "", 1999, 0, 0, 0, 0, 0, byYear);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<Song> inRange = new ArrayList<>();
+            tree.iterator(from, to).forEachRemaining(inRange::add);
+            inRange.sort(Comparator.comparingInt(Song::getDanceability).reversed());
+            List<Song> sorted = inRange.subList(0, Math.min(5, inRange.size()));
+            long sortNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Song> pruned = tree.topK(5, from, to, null);
+            long topKNanos = System.nanoTime() - start;
+
+            if (!sorted.equals(pruned)) throw new AssertionError("topK returned different songs");
+            report("topK", n, round, "sort", sortNanos, "topK", topKNanos);
+        }
+    }
+
+    /**
+     * Compares adding a playlist of m songs to a catalog of n songs with one insert per
+     * song against a join-based union, and measures intersection and difference.
+     * @param n the number of songs in the catalog
+     * @param m the number of songs in the playlist
+     */
+    public static void setOperations(int n, int m) {
+        List<Song> songs = randomSongs(n, 9);
+        songs.sort(null);
+        List<Song> playlist = randomSongs(m, 10);
+        IterableRedBlackTree<Song> other = new IterableRedBlackTree<>();
+        for (Song song : playlist) other.insert(song);
+        for (int round = 1; round <= ROUNDS; round++) {
+            IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+            tree.buildFrom(songs);
+            long start = System.nanoTime();
+            for (Song song : playlist) tree.insert(song);
+            long insertNanos = System.nanoTime() - start;
+
+            IterableRedBlackTree<Song> merged = new IterableRedBlackTree<>();
+            merged.buildFrom(songs);
+            start = System.nanoTime();
+            merged.union(other);
+            long unionNanos = System.nanoTime() - start;
+            if (merged.size() != tree.size()) throw new AssertionError("union lost songs");
+            report("union", n, round, "insert", insertNanos, "union", unionNanos);
+
+            start = System.nanoTime();
+            tree.difference(other);
+            long differenceNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            merged.intersection(other);
+            long intersectionNanos = System.nanoTime() - start;
+            report("difference", n, round, "difference", differenceNanos, "intersection", intersectionNanos);
+        }
+    }
+
+    /**
+     * Compares several writer threads inserting songs into a ConcurrentSkipList against
+     * the same threads inserting into an IterableRedBlackTree behind a global lock.
+     * @param n the number of songs to insert
+     * @param writers the number of writer threads
+     */
+    public static void ingest(int n, int writers) throws InterruptedException {
+        List<Song> songs = randomSongs(n, 11);
+        for (int round = 1; round <= ROUNDS; round++) {
+            IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+            long lockedNanos = runWriters(songs, writers, song -> {
+                synchronized (tree) {
+                    tree.insert(song);
+                }
+            });
+            ConcurrentSkipList<Song> skipList = new ConcurrentSkipList<>();
+            long skipListNanos = runWriters(songs, writers, skipList::insert);
+            if (tree.size() != n || skipList.size() != n) throw new AssertionError("ingest lost songs");
+            report("ingest", n, round, "locked tree", lockedNanos, "skip list", skipListNanos);
+        }
+    }
+
+    /**
+     * Splits songs between the given number of threads, which all pass their songs to
+     * insert at the same time.
+     * @return the time in nanoseconds until every thread finished
+     */
+    private static long runWriters(List<Song> songs, int writers, java.util.function.Consumer<Song> insert)
+            throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            List<Song> part = songs.subList(songs.size() * w / writers, songs.size() * (w + 1) / writers);
+            threads.add(new Thread(() -> part.forEach(insert)));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Compares reloading a tree with clear and buildFrom, with and without node pooling,
+     * and prints the nodes each tree allocated and the garbage collections it caused.
+     * @param n the number of songs in the tree
+     */
+    public static void reload(int n) {
+        List<Song> songs = randomSongs(n, 12);
+        songs.sort(null);
+        IterableRedBlackTree<Song> fresh = new IterableRedBlackTree<>();
+        IterableRedBlackTree<Song> pooled = new IterableRedBlackTree<>();
+        pooled.setNodePooling(true);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long collections = gcCount();
+            long start = System.nanoTime();
+            fresh.clear();
+            fresh.buildFrom(songs);
+            long freshNanos = System.nanoTime() - start;
+            long freshCollections = gcCount() - collections;
+
+            collections = gcCount();
+            start = System.nanoTime();
+            pooled.clear();
+            pooled.buildFrom(songs);
+            long pooledNanos = System.nanoTime() - start;
+            long pooledCollections = gcCount() - collections;
+
+            report("reload", n, round, "new nodes", freshNanos, "pooled", pooledNanos);
+            System.out.printf("%-12s n=%-9d round %d: allocated %d and %d nodes in total, %d and %d collections%n",
+                              "reload", n, round, fresh.getNodesAllocated(), pooled.getNodesAllocated(),
+                              freshCollections, pooledCollections);
+        }
+    }
+
+    /**
+     * @return the number of garbage collections so far, over all collectors
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (java.lang.management.GarbageCollectorMXBean gc
+                 : java.lang.management.ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Compares Backend.filterSongs against the quadratic version it replaced, which
+     * sorted titles with a comparator that searched the tree for each title's year.
+     * Above 10^4 songs the quadratic version takes about a minute, so it only runs
+     * in the last round.
+     * @param n the number of songs in the tree
+     */
+    public static void filterSongs(int n) {
+        List<Song> songs = randomSongs(n, 13);
+        // the order readData loads songs in, which filterSongs returns them in
+        songs.sort(Comparator.comparingInt(Song::getYear).thenComparing(Song::getTitle));
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.buildFrom(songs);
+        Backend backend = new Backend(tree);
+        backend.setCacheCapacity(0); // every round runs the query
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<String> singlePass = backend.filterSongs(-30);
+            long singlePassNanos = System.nanoTime() - start;
+            if (n > 10_000 && round < ROUNDS) {
+                System.out.printf("%-12s n=%-9d round %d: single pass %8.2f ms, quadratic skipped%n",
+                                  "filterSongs", n, round, singlePassNanos / 1e6);
+                continue;
+            }
+            start = System.nanoTime();
+            List<String> quadratic = quadraticFilterSongs(tree, -30);
+            long quadraticNanos = System.nanoTime() - start;
+            if (!quadratic.equals(singlePass)) throw new AssertionError("filterSongs returned different titles");
+            report("filterSongs", n, round, "quadratic", quadraticNanos, "single pass", singlePassNanos);
+        }
+    }
+
+    /**
+     * Compares Backend.topSongs by bpm, which keeps at most k songs in a heap, against
+     * sorting every song within the thresholds and taking the first k.
+     * @param n the number of songs in the tree
+     * @param k the number of songs asked for
+     */
+    public static void topSongs(int n, int k) {
+        List<Song> songs = randomSongs(n, 17);
+        songs.sort(null);
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.buildFrom(songs);
+        Backend backend = new Backend(tree);
+        backend.setCacheCapacity(0); // every round runs the query
+        backend.filterSongs(-30);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<Song> matching = new ArrayList<>();
+            for (Song song : tree) if (song.getLoudness() < -30) matching.add(song);
+            matching.sort(Comparator.comparingInt(Song::getBPM).reversed());
+            List<String> sorted = new ArrayList<>();
+            for (Song song : matching.subList(0, Math.min(k, matching.size()))) sorted.add(song.getTitle());
+            long sortNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<String> heap = backend.topSongs(k, "bpm");
+            long heapNanos = System.nanoTime() - start;
+            if (!sorted.equals(heap)) throw new AssertionError("topSongs returned different titles");
+            report("topSongs", n, round, "sort", sortNanos, "heap", heapNanos);
+        }
+    }
+
+    /**
+     * Compares Backend.filterSongs with and without a loudness index, for a threshold
+     * that about one song in thirty passes.
+     * @param n the number of songs in the tree
+     */
+    public static void secondaryIndex(int n) {
+        List<Song> songs = randomSongs(n, 19);
+        songs.sort(null);
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.buildFrom(songs);
+        Backend scan = new Backend(tree);
+        Backend indexed = new Backend(tree);
+        indexed.addIndex("loudness");
+        scan.setCacheCapacity(0); // every round runs the query
+        indexed.setCacheCapacity(0);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<String> scanned = scan.filterSongs(-57);
+            long scanNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<String> found = indexed.filterSongs(-57);
+            long indexNanos = System.nanoTime() - start;
+            if (!scanned.equals(found)) throw new AssertionError("filterSongs returned different titles");
+            report("secondaryIndex", n, round, "scan", scanNanos, "index", indexNanos);
+        }
+    }
+
+    /**
+     * Compares scanning the columns of SongColumns for songs within bounds on three
+     * attributes against walking the songs of the tree and checking each one.
+     * @param n the number of songs to scan
+     */
+    public static void columnScan(int n) {
+        List<Song> songs = randomSongs(n, 21);
+        songs.sort(null);
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        tree.buildFrom(songs);
+        SongColumns columns = new SongColumns();
+        columns.addAll(songs);
+        int[] min = {2000, 100, Integer.MIN_VALUE, 50, -20, Integer.MIN_VALUE};
+        int[] max = {2010, 140, Integer.MAX_VALUE, 100, 0, Integer.MAX_VALUE};
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int walked = 0;
+            for (Song song : tree) {
+                if (song.getYear() >= 2000 && song.getYear() <= 2010 && song.getBPM() >= 100 && song.getBPM() <= 140
+                    && song.getDanceability() >= 50 && song.getLoudness() >= -20) walked++;
+            }
+            long walkNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            int scanned = columns.select(min, max).length;
+            long scanNanos = System.nanoTime() - start;
+            if (walked != scanned) throw new AssertionError("columnScan found " + scanned + " songs, not " + walked);
+            report("columnScan", n, round, "tree walk", walkNanos, "columns", scanNanos);
+        }
+    }
+
+    /**
+     * Compares Backend.filterSongs, which combines the year and loudness bitmaps built by
+     * readData, against walking the songs of the year range in the tree and checking the
+     * loudness of each, for a ten year range and a threshold that about one song in five
+     * passes.  The songs are written to a temporary csv file for readData.
+     * @param n the number of songs to load
+     */
+    public static void filterBitmaps(int n) throws IOException {
+        File file = File.createTempFile("songs", ".csv");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("title,artist,top genre,year,bpm,nrgy,dnce,dB,live");
+            for (Song song : randomSongs(n, 31)) {
+                out.println(song.getTitle() + "," + song.getArtist() + ",pop," + song.getYear() + ","
+                            + song.getBPM() + "," + song.getEnergy() + "," + song.getDanceability() + ","
+                            + song.getLoudness() + "," + song.getLiveness());
+            }
+        }
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+        backend.readData(file.getPath());
+        backend.setCacheCapacity(0); // every round runs the query
+        backend.getRange(2000, 2009);
+        Comparator<Song> byYear = Comparator.comparingInt(Song::getYear);
+        Song from = new Song("", "", "", 2000, 0, 0, 0, 0, 0, byYear);
+        Song to = new Song("", "", "", 2009, 0, 0, 0, 0, 0, byYear);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<String> walked = new ArrayList<>();
+            Iterator<Song> songs = tree.iterator(from, to);
+            while (songs.hasNext()) {
+                Song song = songs.next();
+                if (song.getLoudness() >= -12) walked.add(song.getTitle());
+            }
+            long walkNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<String> combined = backend.filterSongs(-12);
+            long bitmapNanos = System.nanoTime() - start;
+            if (!walked.equals(combined)) throw new AssertionError("filterSongs returned different titles");
+            report("filterBitmaps", n, round, "tree walk", walkNanos, "bitmaps", bitmapNanos);
+        }
+    }
+
+    /**
+     * The filterSongs implementation that Backend used before, for comparison.
+     */
+    private static List<String> quadraticFilterSongs(IterableRedBlackTree<Song> tree, int threshold) {
+        List<String> filteredTitles = new ArrayList<>();
+        for (Song song : tree) {
+            if (song.getLoudness() < threshold) filteredTitles.add(song.getTitle());
+        }
+        filteredTitles.sort(Comparator.comparingInt(title -> {
+            for (Song song : tree) {
+                if (song.getTitle().equals(title)) return song.getYear();
+            }
+            return Integer.MAX_VALUE;
+        }));
+        return filteredTitles;
+    }
+
+    /**
+     * Runs readers and one writer against tree for the given time.
+     * @param synchronize whether every operation synchronizes on the tree
+     * @return the number of reads completed
+     */
+    private static long runContention(IterableRedBlackTree<Song> tree, List<Song> extra, int readers,
+                                      int millis, boolean synchronize) throws InterruptedException {
+        java.util.concurrent.atomic.AtomicBoolean running = new java.util.concurrent.atomic.AtomicBoolean(true);
+        java.util.concurrent.atomic.LongAdder reads = new java.util.concurrent.atomic.LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            for (int i = 0; running.get(); i = (i + 1) % extra.size()) {
+                if (synchronize) {
+                    synchronized (tree) {
+                        tree.insert(extra.get(i));
+                    }
+                } else {
+                    tree.insert(extra.get(i));
+                }
+                java.util.concurrent.locks.LockSupport.parkNanos(1_000_000);
+            }
+        }));
+        for (int r = 0; r < readers; r++) {
+            long seed = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    Song probe = extra.get(random.nextInt(extra.size()));
+                    if (synchronize) {
+                        synchronized (tree) {
+                            readOnce(tree, probe);
+                        }
+                    } else {
+                        readOnce(tree, probe);
+                    }
+                    reads.increment();
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread thread : threads) thread.join();
+        return reads.sum();
+    }
+
+    /**
+     * One read for the contention benchmark: a contains check and a bounded iteration.
+     */
+    private static int readOnce(IterableRedBlackTree<Song> tree, Song probe) {
+        int count = tree.contains(probe) ? 1 : 0;
+        Iterator<Song> songs = tree.iterator(probe, probe);
+        while (songs.hasNext()) {
+            songs.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the time in nanoseconds to iterate over every value of tree
+     */
+    private static long timeIteration(Iterable<Song> tree) {
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (Song song : tree) checksum += song.getYear();
+        long nanos = System.nanoTime() - start;
+        if (checksum == 42) System.out.println(); // keeps the loop from being optimized away
+        return nanos;
+    }
+
+    /**
+     * @return the number of bytes in use on the heap after requesting garbage collection
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Creates n songs with random attributes, ordered by year like Backend.readData.
+     * @param n the number of songs to create
+     * @param seed the seed for the random attributes
+     * @return the list of songs, in random order
+     */
+    static List<Song> randomSongs(int n, long seed) {
+        Random random = new Random(seed);
+        Comparator<Song> byYear = Comparator.comparingInt(Song::getYear);
+        List<Song> songs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            songs.add(new Song("Song " + i, "Artist " + random.nextInt(1000), "pop",
+                               1950 + random.nextInt(75), 60 + random.nextInt(140),
+                               random.nextInt(101), random.nextInt(101),
+                               -random.nextInt(60), random.nextInt(101), byYear));
+        }
+        return songs;
+    }
+
+    /**
+     * Prints one line comparing the times of two variants of a benchmark.
+     */
+    private static void report(String name, int n, int round,
+                               String firstLabel, long firstNanos,
+                               String secondLabel, long secondNanos) {
+        System.out.printf("%-12s n=%-9d round %d: %s %8.2f ms, %s %8.2f ms (%.1fx)%n",
+                          name, n, round, firstLabel, firstNanos / 1e6,
+                          secondLabel, secondNanos / 1e6, (double) firstNanos / secondNanos);
+    }
+
+    /**
+     * Runs the benchmarks named in args, or all benchmarks when args is empty.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        List<String> names = List.of(args);
+        if (names.isEmpty() || names.contains("bulkLoad")) {
+            bulkLoad(100_000);
+            bulkLoad(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("footprint")) {
+            footprint(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("parallelScan")) {
+            parallelScan(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("bplusTree")) {
+            bplusTree(100_000);
+            bplusTree(1_000_000);
+            // two trees of ten million songs need a larger heap than the default
+            if (Runtime.getRuntime().maxMemory() >= 6L << 30) {
+                bplusTree(10_000_000);
+            } else {
+                System.out.println("bplusTree    n=10000000 skipped, run with -Xmx6g or more");
+            }
+        }
+        if (names.isEmpty() || names.contains("topK")) {
+            topK(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("setOperations")) {
+            setOperations(1_000_000, 1_000);
+            setOperations(1_000_000, 100_000);
+        }
+        if (names.isEmpty() || names.contains("ingest")) {
+            ingest(1_000_000, 8);
+        }
+        if (names.isEmpty() || names.contains("reload")) {
+            reload(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("filterSongs")) {
+            filterSongs(1_000);
+            filterSongs(10_000);
+            filterSongs(100_000);
+        }
+        if (names.isEmpty() || names.contains("topSongs")) {
+            topSongs(1_000_000, 10);
+            topSongs(1_000_000, 1_000);
+        }
+        if (names.isEmpty() || names.contains("secondaryIndex")) {
+            secondaryIndex(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("columnScan")) {
+            columnScan(1_000_000);
+            // ten million songs need a larger heap than the default
+            if (Runtime.getRuntime().maxMemory() >= 6L << 30) {
+                columnScan(10_000_000);
+            } else {
+                System.out.println("columnScan   n=10000000 skipped, run with -Xmx6g or more");
+            }
+        }
+        if (names.isEmpty() || names.contains("filterBitmaps")) {
+            filterBitmaps(1_000_000);
+        }
+        if (names.isEmpty() || names.contains("contention")) {
+            contention(100_000, 1000);
+        }
+    }
+}
@@ -52,13 +52,24 @@ public class Tree_Placeholder implements IterableSortedCollection<Song> {
     public void setIteratorMax(Comparable<Song> max) { this.max = max; }
 
     public Iterator<Song> iterator() {
+        return iterator(min, true, max, true);
+    }
+
+    public Iterator<Song> iterator(Comparable<Song> min, Comparable<Song> max) {
+        return iterator(min, true, max, true);
+    }
+
+    public Iterator<Song> iterator(Comparable<Song> min, boolean minInclusive,
+                                   Comparable<Song> max, boolean maxInclusive) {
         List<Song> tmp = new ArrayList<>(songs); // make a copy of list
         if(lastAddedSong != null) tmp.add(lastAddedSong); // with added song
 
         // remove all songs that our outside of the specified min-max range
+        int lowest = minInclusive ? 0 : -1;
+        int highest = maxInclusive ? 0 : 1;
         for(int i=0;i<tmp.size();i++)
-            if( (min != null && min.compareTo(tmp.get(i)) > 0) ||
-                (max != null && max.compareTo(tmp.get(i)) < 0)) {
+            if( (min != null && min.compareTo(tmp.get(i)) > lowest) ||
+                (max != null && max.compareTo(tmp.get(i)) < highest)) {
 
                 tmp.remove(i);
                 i--;